@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+import vavi.speech.rpc.jsapi2.client.RpcClient.SynthesizerPropertiesDTO;
+import vavi.speech.rpc.jsapi2.client.RpcClient.VoiceDTO;
+
+
+/**
+ * BinaryCodec. length-prefixed big endian binary.
+ * <ul>
+ *  <li>boolean ... 1 byte</li>
+ *  <li>int, long ... 4, 8 bytes</li>
+ *  <li>string ... int length of utf-8 bytes (-1 for null) and the bytes</li>
+ *  <li>array ... int length (-1 for null) and elements</li>
+ *  <li>{@link VoiceDTO} ... boolean present, boolean locale present, language, country, variant,
+ *      name, gender, age, variant, mode name</li>
+ *  <li>{@link SynthesizerPropertiesDTO} ... int mask of present fields and the present fields in the declared order</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class BinaryCodec implements Codec {
+
+    /** */
+    public static final String MEDIA_TYPE = "application/x-jsapi2-binary";
+
+    @Override
+    public String getMediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public boolean supports(Type type) {
+        return Codecs.isRpcType(type);
+    }
+
+    @Override
+    public void write(Object value, Type type, OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        if (type == Boolean.class || type == boolean.class) {
+            dos.writeBoolean((Boolean) value);
+        } else if (type == Integer.class || type == int.class) {
+            dos.writeInt((Integer) value);
+        } else if (type == Long.class || type == long.class) {
+            dos.writeLong((Long) value);
+        } else if (type == int[].class) {
+            int[] values = (int[]) value;
+            dos.writeInt(values == null ? -1 : values.length);
+            if (values != null) {
+                for (int v : values) {
+                    dos.writeInt(v);
+                }
+            }
+        } else if (type == String[].class) {
+            String[] values = (String[]) value;
+            dos.writeInt(values == null ? -1 : values.length);
+            if (values != null) {
+                for (String v : values) {
+                    writeString(dos, v);
+                }
+            }
+        } else if (type == VoiceDTO.class) {
+            writeVoice(dos, (VoiceDTO) value);
+        } else if (type == VoiceDTO[].class) {
+            VoiceDTO[] values = (VoiceDTO[]) value;
+            dos.writeInt(values == null ? -1 : values.length);
+            if (values != null) {
+                for (VoiceDTO v : values) {
+                    writeVoice(dos, v);
+                }
+            }
+        } else if (type == SynthesizerPropertiesDTO.class) {
+            writeProperties(dos, (SynthesizerPropertiesDTO) value);
+        } else {
+            throw new IOException("unsupported type: " + type);
+        }
+        dos.flush();
+    }
+
+    @Override
+    public Object read(Type type, InputStream in) throws IOException {
+        DataInputStream dis = new DataInputStream(in);
+        if (type == Boolean.class || type == boolean.class) {
+            return dis.readBoolean();
+        } else if (type == Integer.class || type == int.class) {
+            return dis.readInt();
+        } else if (type == Long.class || type == long.class) {
+            return dis.readLong();
+        } else if (type == int[].class) {
+            int length = dis.readInt();
+            if (length < 0) {
+                return null;
+            }
+            int[] values = new int[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = dis.readInt();
+            }
+            return values;
+        } else if (type == String[].class) {
+            int length = dis.readInt();
+            if (length < 0) {
+                return null;
+            }
+            String[] values = new String[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = readString(dis);
+            }
+            return values;
+        } else if (type == VoiceDTO.class) {
+            return readVoice(dis);
+        } else if (type == VoiceDTO[].class) {
+            int length = dis.readInt();
+            if (length < 0) {
+                return null;
+            }
+            VoiceDTO[] values = new VoiceDTO[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = readVoice(dis);
+            }
+            return values;
+        } else if (type == SynthesizerPropertiesDTO.class) {
+            return readProperties(dis);
+        } else {
+            throw new IOException("unsupported type: " + type);
+        }
+    }
+
+    /** */
+    private static void writeString(DataOutputStream dos, String value) throws IOException {
+        if (value == null) {
+            dos.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        }
+    }
+
+    /** */
+    private static String readString(DataInputStream dis) throws IOException {
+        int length = dis.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        dis.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** */
+    private static void writeVoice(DataOutputStream dos, VoiceDTO voice) throws IOException {
+        dos.writeBoolean(voice != null);
+        if (voice == null) {
+            return;
+        }
+        dos.writeBoolean(voice.locale != null);
+        if (voice.locale != null) {
+            writeString(dos, voice.locale.language);
+            writeString(dos, voice.locale.country);
+            writeString(dos, voice.locale.variant);
+        }
+        writeString(dos, voice.name);
+        dos.writeInt(voice.gender);
+        dos.writeInt(voice.age);
+        dos.writeInt(voice.variant);
+        writeString(dos, voice.modeName);
+    }
+
+    /** */
+    private static VoiceDTO readVoice(DataInputStream dis) throws IOException {
+        if (!dis.readBoolean()) {
+            return null;
+        }
+        VoiceDTO voice = new VoiceDTO();
+        if (dis.readBoolean()) {
+            voice.locale = new VoiceDTO.SpeechLocaleDTO();
+            voice.locale.language = readString(dis);
+            voice.locale.country = readString(dis);
+            voice.locale.variant = readString(dis);
+        }
+        voice.name = readString(dis);
+        voice.gender = dis.readInt();
+        voice.age = dis.readInt();
+        voice.variant = dis.readInt();
+        voice.modeName = readString(dis);
+        return voice;
+    }
+
+    /** */
+    private static void writeProperties(DataOutputStream dos, SynthesizerPropertiesDTO p) throws IOException {
+        int mask = (p.reset != null ? 1 : 0) |
+                (p.voice != null ? 1 << 1 : 0) |
+                (p.volume != null ? 1 << 2 : 0) |
+                (p.pitch != null ? 1 << 3 : 0) |
+                (p.pitchRange != null ? 1 << 4 : 0) |
+                (p.speakingRate != null ? 1 << 5 : 0) |
+                (p.interruptibility != null ? 1 << 6 : 0) |
+                (p.priority != null ? 1 << 7 : 0) |
+                (p.base != null ? 1 << 8 : 0);
+        dos.writeInt(mask);
+        if (p.reset != null) dos.writeBoolean(p.reset);
+        if (p.voice != null) writeVoice(dos, p.voice);
+        if (p.volume != null) dos.writeInt(p.volume);
+        if (p.pitch != null) dos.writeInt(p.pitch);
+        if (p.pitchRange != null) dos.writeInt(p.pitchRange);
+        if (p.speakingRate != null) dos.writeInt(p.speakingRate);
+        if (p.interruptibility != null) dos.writeInt(p.interruptibility);
+        if (p.priority != null) dos.writeInt(p.priority);
+        if (p.base != null) writeString(dos, p.base);
+    }
+
+    /** */
+    private static SynthesizerPropertiesDTO readProperties(DataInputStream dis) throws IOException {
+        int mask = dis.readInt();
+        SynthesizerPropertiesDTO p = new SynthesizerPropertiesDTO();
+        if ((mask & 1) != 0) p.reset = dis.readBoolean();
+        if ((mask & 1 << 1) != 0) p.voice = readVoice(dis);
+        if ((mask & 1 << 2) != 0) p.volume = dis.readInt();
+        if ((mask & 1 << 3) != 0) p.pitch = dis.readInt();
+        if ((mask & 1 << 4) != 0) p.pitchRange = dis.readInt();
+        if ((mask & 1 << 5) != 0) p.speakingRate = dis.readInt();
+        if ((mask & 1 << 6) != 0) p.interruptibility = dis.readInt();
+        if ((mask & 1 << 7) != 0) p.priority = dis.readInt();
+        if ((mask & 1 << 8) != 0) p.base = readString(dis);
+        return p;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+
+/**
+ * Codec. encodes rpc values directly to and from streams.
+ * <p>
+ * implementations are selected by the media type, see {@link Codecs}.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public interface Codec {
+
+    /** media type without parameters */
+    String getMediaType();
+
+    /** @return true when values of the type can be encoded */
+    boolean supports(Type type);
+
+    /** the stream is not closed */
+    void write(Object value, Type type, OutputStream out) throws IOException;
+
+    /** the stream is not closed */
+    Object read(Type type, InputStream in) throws IOException;
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+
+/**
+ * CodecProvider. rpc values over {@link Codecs}, registered on both the server and the client.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+@Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
+@Consumes({MediaType.APPLICATION_JSON, Codecs.BINARY})
+public class CodecProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+    /** */
+    private static Codec codec(Type type, MediaType mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        Codec codec = Codecs.get(mediaType.getType() + "/" + mediaType.getSubtype());
+        return codec != null && codec.supports(type) ? codec : null;
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return codec(type, mediaType) != null;
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        return codec(type, mediaType).read(type, entityStream);
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return codec(type, mediaType) != null;
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        codec(type, mediaType).write(value, type, entityStream);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Set;
+
+import vavi.speech.rpc.jsapi2.client.RpcClient.SynthesizerPropertiesDTO;
+import vavi.speech.rpc.jsapi2.client.RpcClient.VoiceDTO;
+
+
+/**
+ * Codecs. available codecs.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.codec ... "json" or "binary", the one the client accepts first, default "json"</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class Codecs {
+
+    /** */
+    private Codecs() {}
+
+    /** for annotations */
+    public static final String BINARY = BinaryCodec.MEDIA_TYPE;
+
+    /** */
+    private static final List<Codec> codecs = List.of(new JsonCodec(), new BinaryCodec());
+
+    /** values of rpcs handled by codecs */
+    private static final Set<Type> types = Set.of(
+            boolean.class, Boolean.class, int.class, Integer.class, long.class, Long.class,
+            int[].class, String[].class, VoiceDTO.class, VoiceDTO[].class, SynthesizerPropertiesDTO.class);
+
+    /** */
+    private static Codec preferred;
+
+    /* */
+    static {
+        preferred = get("binary".equals(System.getProperty("vavi.speech.rpc.codec")) ? BINARY : "application/json");
+    }
+
+    /** @return true when the type is a value of rpcs */
+    static boolean isRpcType(Type type) {
+        return types.contains(type);
+    }
+
+    /**
+     * @param mediaType type/subtype, parameters are ignored
+     * @return null when not found
+     */
+    public static Codec get(String mediaType) {
+        for (Codec codec : codecs) {
+            if (mediaType.regionMatches(true, 0, codec.getMediaType(), 0, codec.getMediaType().length())) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /** @return the codec the client accepts first */
+    public static Codec getPreferred() {
+        return preferred;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.Invocation;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.SseEventSource;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+
+
+/**
+ * HttpTransport. a request per call over http.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class HttpTransport implements Transport {
+
+    /** methods whose parameters except the session are posted as a form */
+    private static final Set<String> FORM_METHODS = Set.of("synthesizerProperties/voice");
+
+    /**
+     * media types of text "body" parameters other than utf-8 plain text, key: method.
+     * other than texts are encoded by the preferred codec.
+     */
+    private static final Map<String, MediaType> BODY_TYPES = Map.of(
+            "speakMarkup", new MediaType("application", "ssml+xml", "UTF-8"));
+
+    /** http methods of "body" parameters other than POST, key: method */
+    private static final Map<String, String> BODY_VERBS = Map.of("synthesizerProperties", "PATCH");
+
+    /** rest address */
+    private final WebTarget target;
+
+    /**
+     * uses the shared client.
+     *
+     * @param url server address e.g. "http://localhost:60090/"
+     */
+    public HttpTransport(String url) {
+        this(url, RpcClientFactory.getClient());
+    }
+
+    /**
+     * @param url server address e.g. "http://localhost:60090/"
+     * @param client closed by the owner, the {@link CodecProvider} must be registered,
+     *               {@link RpcCallFilter} too for {@link RpcListener}s
+     */
+    public HttpTransport(String url, Client client) {
+        try {
+            target = client.target(url);
+        } catch (Exception e) {
+            throw new IllegalStateException("RpcClient is not available at " + url, e);
+        }
+    }
+
+    /** the client is not closed, it is shared */
+    @Override
+    public void close() {
+    }
+
+    /** @return target for the method with query parameters */
+    private WebTarget target(String method, Map<String, ?> params) {
+        WebTarget t = target.path("/jsapi2/" + method);
+        for (Map.Entry<String, ?> e : params.entrySet()) {
+            if (e.getValue() != null) {
+                t = t.queryParam(e.getKey(), e.getValue());
+            }
+        }
+        return t;
+    }
+
+    /** the preferred codec first */
+    private static Invocation.Builder request(WebTarget target, Class<?> type) {
+        if (type == Void.class || type == String.class) {
+            return target.request();
+        }
+        Codec codec = Codecs.getPreferred();
+        return target.request(codec.getMediaType(), MediaType.APPLICATION_JSON + ";q=0.5");
+    }
+
+    /** */
+    private static <T> T read(String method, Response response, Class<T> type) {
+        try (response) {
+            if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+                throw new WebApplicationException(method + " failed", response.getStatus());
+            }
+            if (type == Void.class || !response.hasEntity()) {
+                return null;
+            }
+            return response.readEntity(type);
+        }
+    }
+
+    /** an invocation not sent yet, entity is null for GET */
+    private record Prepared(Invocation.Builder builder, String verb, Entity<?> entity) {}
+
+    /** */
+    private Prepared prepare(RpcCall call, Map<String, ?> params, Class<?> type) {
+        Prepared p = prepare(call.getMethod(), params, type);
+        // the trace id, the status and sizes are recorded by RpcCallFilter
+        p.builder.property(RpcCall.PROPERTY, call);
+        return p;
+    }
+
+    /** */
+    private Prepared prepare(String method, Map<String, ?> params, Class<?> type) {
+        if (FORM_METHODS.contains(method)) {
+            MultivaluedHashMap<String, String> formParams = new MultivaluedHashMap<>();
+            params.forEach((k, v) -> {
+                if (v != null && !k.equals("session")) {
+                    formParams.putSingle(k, String.valueOf(v));
+                }
+            });
+            Map<String, Object> query = new HashMap<>();
+            query.put("session", params.get("session"));
+            return new Prepared(request(target(method, query), type), "POST",
+                    Entity.entity(formParams, MediaType.APPLICATION_FORM_URLENCODED_TYPE));
+        }
+        if (params.containsKey("body")) {
+            Map<String, Object> query = new HashMap<>(params);
+            Object body = query.remove("body");
+            MediaType mediaType = BODY_TYPES.getOrDefault(method, MediaType.TEXT_PLAIN_TYPE.withCharset("UTF-8"));
+            Invocation.Builder builder = request(target(method, query), type);
+            if (body instanceof InputStream) {
+                // sent as it is read, the server starts before the end
+                builder.property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED);
+            } else if (!(body instanceof String)) {
+                mediaType = MediaType.valueOf(Codecs.getPreferred().getMediaType());
+            }
+            String verb = BODY_VERBS.getOrDefault(method, "POST");
+            if (verb.equals("PATCH")) {
+                // HttpURLConnection rejects PATCH
+                builder.property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true);
+            }
+            return new Prepared(builder, verb, Entity.entity(body, mediaType));
+        }
+        return new Prepared(request(target(method, params), type), "GET", null);
+    }
+
+    @Override
+    public <T> T call(String method, Map<String, ?> params, Class<T> type) {
+        return call(new RpcCall(method), params, type);
+    }
+
+    @Override
+    public <T> T call(RpcCall call, Map<String, ?> params, Class<T> type) {
+        Prepared p = prepare(call, params, type);
+        Response response = p.entity == null ? p.builder.method(p.verb) : p.builder.method(p.verb, p.entity);
+        return read(call.getMethod(), response, type);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> callAsync(String method, Map<String, ?> params, Class<T> type) {
+        return callAsync(new RpcCall(method), params, type);
+    }
+
+    /** by the rx invoker, the calling thread is not blocked */
+    @Override
+    public <T> CompletableFuture<T> callAsync(RpcCall call, Map<String, ?> params, Class<T> type) {
+        Prepared p = prepare(call, params, type);
+        CompletionStage<Response> response = p.entity == null ? p.builder.rx().method(p.verb) : p.builder.rx().method(p.verb, p.entity);
+        return response.toCompletableFuture().thenApply(r -> read(call.getMethod(), r, type));
+    }
+
+    @Override
+    public Streamed stream(String method, Map<String, ?> params) {
+        return stream(new RpcCall(method), params);
+    }
+
+    @Override
+    public Streamed stream(RpcCall call, Map<String, ?> params) {
+        String method = call.getMethod();
+        Response response;
+        if (params.containsKey("body")) {
+            Prepared p = prepare(call, params, Void.class);
+            response = p.builder.accept(MediaType.WILDCARD_TYPE).method(p.verb, p.entity);
+        } else {
+            response = target(method, params)
+                    .request(MediaType.APPLICATION_OCTET_STREAM_TYPE)
+                    .property(RpcCall.PROPERTY, call)
+                    .get();
+        }
+        if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+            response.close();
+            throw new WebApplicationException(method + " failed", response.getStatus());
+        }
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        response.getStringHeaders().forEach((k, v) -> headers.put(k, v.get(0)));
+        return new Streamed(response.readEntity(InputStream.class), headers);
+    }
+
+    /** server-sent events */
+    @Override
+    public Closeable subscribe(Map<String, ?> params, Consumer<String> listener) {
+        SseEventSource source = SseEventSource.target(target("events", params))
+                .reconnectingEvery(1, TimeUnit.SECONDS)
+                .build();
+        source.register(event -> listener.accept(event.readData()));
+        source.open();
+        return source::close;
+    }
+}
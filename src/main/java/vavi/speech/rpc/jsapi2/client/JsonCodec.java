@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+
+
+/**
+ * JsonCodec. gson streaming over utf-8, no intermediate string.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class JsonCodec implements Codec {
+
+    /** */
+    private static final Gson gson = new GsonBuilder().create();
+
+    @Override
+    public String getMediaType() {
+        return "application/json";
+    }
+
+    @Override
+    public boolean supports(Type type) {
+        return Codecs.isRpcType(type);
+    }
+
+    @Override
+    public void write(Object value, Type type, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        try {
+            gson.toJson(value, type, writer);
+        } catch (JsonIOException e) {
+            throw new IOException(e);
+        }
+        writer.flush();
+    }
+
+    @Override
+    public Object read(Type type, InputStream in) throws IOException {
+        try {
+            return gson.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), type);
+        } catch (JsonIOException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.sound.sampled.AudioInputStream;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * LoadGenerator. calls the server by {@link RpcClient}s from threads and reports
+ * the throughput and latencies.
+ * <p>
+ * each thread has its own client, a call starts as soon as the previous one returns.
+ * calls started in the warmup are not counted.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.load.threads ... concurrent clients, default 8</li>
+ *  <li>vavi.speech.rpc.load.duration ... measured seconds, default 30</li>
+ *  <li>vavi.speech.rpc.load.warmup ... seconds before measuring, default 5</li>
+ *  <li>vavi.speech.rpc.load.method ... "speakAudio" synthesizes and reads the whole audio in a session (default),
+ *      "speak" enqueues to the default engine, "getVoices"</li>
+ *  <li>vavi.speech.rpc.load.modeName ... synthesizer mode class name, default the stub engine</li>
+ *  <li>vavi.speech.rpc.load.text ... text to speak</li>
+ *  <li>vavi.speech.rpc.load.unique ... appends a sequence number to the text not to be served from the cache, default true</li>
+ * </ul>
+ * the server and the transport are specified by the {@link RpcClient} system properties.
+ * the server is started with "-Dvavi.speech.rpc.server.catalog=vavi.speech.rpc.jsapi2.stub.StubSynthesizerMode"
+ * to catalog the stub voices at startup.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class LoadGenerator {
+
+    private static final Logger logger = getLogger(LoadGenerator.class.getName());
+
+    /** */
+    private static int threads = 8;
+
+    /** */
+    private static long duration = 30;
+
+    /** */
+    private static long warmup = 5;
+
+    /** */
+    private static String method = "speakAudio";
+
+    /** */
+    private static String modeName = "vavi.speech.rpc.jsapi2.stub.StubSynthesizerMode";
+
+    /** */
+    private static String text = "これは負荷試験です。";
+
+    /** */
+    private static boolean unique = true;
+
+    /* */
+    static {
+        threads = Integer.parseInt(System.getProperty("vavi.speech.rpc.load.threads", String.valueOf(threads)));
+        duration = Long.parseLong(System.getProperty("vavi.speech.rpc.load.duration", String.valueOf(duration)));
+        warmup = Long.parseLong(System.getProperty("vavi.speech.rpc.load.warmup", String.valueOf(warmup)));
+        method = System.getProperty("vavi.speech.rpc.load.method", method);
+        modeName = System.getProperty("vavi.speech.rpc.load.modeName", modeName);
+        text = System.getProperty("vavi.speech.rpc.load.text", text);
+        unique = Boolean.parseBoolean(System.getProperty("vavi.speech.rpc.load.unique", String.valueOf(unique)));
+    }
+
+    /**
+     * result of a run.
+     *
+     * @param requests calls succeeded in the measured time
+     * @param errors calls failed in the measured time
+     * @param seconds the measured time
+     * @param p50 median latency in milliseconds
+     * @param p99 99th percentile latency in milliseconds
+     * @param max max latency in milliseconds
+     */
+    public record Report(long requests, long errors, double seconds, double p50, double p99, double max) {
+
+        /** @return succeeded calls per second */
+        public double throughput() {
+            return seconds > 0 ? requests / seconds : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "requests: %d, errors: %d, seconds: %.1f, throughput: %.1f/s, p50: %.1f ms, p99: %.1f ms, max: %.1f ms",
+                    requests, errors, seconds, throughput(), p50, p99, max);
+        }
+    }
+
+    /** creates a client per thread */
+    private final Supplier<RpcClient> clients;
+
+    /** appended to texts */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /** */
+    public LoadGenerator(Supplier<RpcClient> clients) {
+        this.clients = clients;
+    }
+
+    /** latencies recorded by a thread */
+    private static final class Recorder {
+        long[] nanos = new long[1024];
+        int count;
+        long errors;
+        void record(long n) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = n;
+        }
+    }
+
+    /**
+     * Calls the server until the duration passes.
+     *
+     * @param threads concurrent clients
+     * @param warmup calls started in this time are not counted
+     * @param duration measured time after the warmup
+     * @param method "speakAudio", "speak" or "getVoices"
+     * @param modeName synthesizer mode class name
+     * @param text text to speak
+     * @throws IllegalArgumentException unknown method
+     */
+    public Report run(int threads, Duration warmup, Duration duration, String method, String modeName, String text)
+            throws InterruptedException, ExecutionException {
+        if (!List.of("speakAudio", "speak", "getVoices").contains(method)) {
+            throw new IllegalArgumentException("method: " + method);
+        }
+        long measureStart = System.nanoTime() + warmup.toNanos();
+        long measureEnd = measureStart + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Recorder>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> drive(method, modeName, text, measureStart, measureEnd)));
+            }
+            long[] nanos = new long[0];
+            long errors = 0;
+            for (Future<Recorder> future : futures) {
+                Recorder recorder = future.get();
+                int offset = nanos.length;
+                nanos = Arrays.copyOf(nanos, offset + recorder.count);
+                System.arraycopy(recorder.nanos, 0, nanos, offset, recorder.count);
+                errors += recorder.errors;
+            }
+            Arrays.sort(nanos);
+            return new Report(nanos.length, errors, duration.toNanos() / 1e9,
+                    percentile(nanos, 50), percentile(nanos, 99), nanos.length > 0 ? nanos[nanos.length - 1] / 1e6 : 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** @return milliseconds by the nearest rank, 0 when empty */
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)] / 1e6;
+    }
+
+    /** a thread */
+    private Recorder drive(String method, String modeName, String text, long measureStart, long measureEnd) throws IOException {
+        Recorder recorder = new Recorder();
+        try (RpcClient client = clients.get()) {
+            if (method.equals("speakAudio")) {
+                client.open(modeName);
+            } else {
+                client.getVoices(modeName); // selects the default engine
+            }
+            while (!Thread.currentThread().isInterrupted()) {
+                long start = System.nanoTime();
+                if (start >= measureEnd) {
+                    break;
+                }
+                try {
+                    call(client, method, modeName, unique ? text + sequence.incrementAndGet() : text);
+                    if (start >= measureStart) {
+                        recorder.record(System.nanoTime() - start);
+                    }
+                } catch (IOException | RuntimeException e) {
+logger.log(Level.DEBUG, e.getMessage(), e);
+                    if (start >= measureStart) {
+                        recorder.errors++;
+                    }
+                }
+            }
+        }
+        return recorder;
+    }
+
+    /** */
+    private static void call(RpcClient client, String method, String modeName, String text) throws IOException {
+        switch (method) {
+            case "speakAudio" -> {
+                try (AudioInputStream in = client.speakAudio(text)) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+            case "speak" -> client.speak(text);
+            case "getVoices" -> client.getVoices(modeName);
+            default -> throw new IllegalArgumentException("method: " + method);
+        }
+    }
+
+    /** runs by the system properties and prints the report */
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator(RpcClient::new);
+logger.log(Level.INFO, "load: " + threads + " threads, " + method + ", " + modeName + ", warmup " + warmup + "s, duration " + duration + "s");
+        Report report = generator.run(threads, Duration.ofSeconds(warmup), Duration.ofSeconds(duration), method, modeName, text);
+        System.out.println(report);
+    }
+}
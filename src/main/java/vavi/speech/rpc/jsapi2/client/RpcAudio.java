@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+
+/**
+ * RpcAudio. utilities for synthesized audio transferred over the wire.
+ * <p>
+ * the audio format is described by a media locator such as
+ * {@code playback://audio?rate=16000&bits=16&channels=1&endian=little&signed=true}.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class RpcAudio {
+
+    private RpcAudio() {
+    }
+
+    /** response header carrying the media locator of raw pcm audio */
+    public static final String HEADER_MEDIA_LOCATOR = "X-Media-Locator";
+
+    /** */
+    public static AudioFormat toAudioFormat(String locator) {
+        Map<String, String> params = new HashMap<>();
+        int p = locator.indexOf('?');
+        if (p >= 0) {
+            for (String pair : locator.substring(p + 1).split("&")) {
+                String[] kv = pair.split("=", 2);
+                params.put(kv[0], kv.length > 1 ? kv[1] : "");
+            }
+        }
+        float rate = Float.parseFloat(params.getOrDefault("rate", "16000"));
+        int bits = Integer.parseInt(params.getOrDefault("bits", "16"));
+        int channels = Integer.parseInt(params.getOrDefault("channels", "1"));
+        boolean signed = !"false".equals(params.get("signed"));
+        boolean bigEndian = "big".equals(params.get("endian"));
+        return new AudioFormat(rate, bits, channels, signed, bigEndian);
+    }
+
+    /** plays the stream on the local audio device, blocks until played */
+    public static void play(AudioInputStream ais) throws IOException, LineUnavailableException {
+        AudioFormat format = ais.getFormat();
+        SourceDataLine line = AudioSystem.getSourceDataLine(format);
+        line.open(format);
+        line.start();
+        try {
+            byte[] buf = new byte[8192];
+            int r;
+            while ((r = ais.read(buf)) != -1) {
+                line.write(buf, 0, r);
+            }
+            line.drain();
+        } finally {
+            line.close();
+        }
+    }
+
+    /** saves the stream as a wave file */
+    public static void save(AudioInputStream ais, Path path) throws IOException {
+        AudioSystem.write(ais, AudioFileFormat.Type.WAVE, path.toFile());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * RpcCall. what happened to a call, given to {@link RpcListener}s.
+ * <p>
+ * the trace id is sent as {@link #HEADER_TRACE_ID}, the server logs it and
+ * answers its own processing time as {@link #HEADER_SERVER_TIMING}.
+ * the client time minus the server time is spent on connections, serialization and the network.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class RpcCall {
+
+    /** */
+    public static final String HEADER_TRACE_ID = "X-Trace-Id";
+
+    /** e.g. "app;dur=12.3" */
+    public static final String HEADER_SERVER_TIMING = "Server-Timing";
+
+    /** request property of a jersey invocation carrying this */
+    static final String PROPERTY = RpcCall.class.getName();
+
+    /** */
+    private static final Pattern DURATION = Pattern.compile("dur=([0-9.]+)");
+
+    /** */
+    private final String method;
+
+    /** */
+    private final String traceId = UUID.randomUUID().toString().replace("-", "");
+
+    /** */
+    private final long start = System.nanoTime();
+
+    /** */
+    private volatile long end;
+
+    /** */
+    private volatile long requestBytes = -1;
+
+    /** */
+    private volatile long responseBytes = -1;
+
+    /** */
+    private volatile int status;
+
+    /** */
+    private volatile double serverMillis = -1;
+
+    /** */
+    private volatile Throwable error;
+
+    /** */
+    RpcCall(String method) {
+        this.method = method;
+    }
+
+    /** endpoint name under "jsapi2" */
+    public String getMethod() {
+        return method;
+    }
+
+    /** */
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /** @return nano seconds until the response, or until now while calling */
+    public long getElapsed() {
+        return (end != 0 ? end : System.nanoTime()) - start;
+    }
+
+    /** @return bytes of the request body, -1 when unknown */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /** @return bytes of the response body read so far, -1 when unknown */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /** @return http status or its equivalent, 0 when no response */
+    public int getStatus() {
+        return status;
+    }
+
+    /** @return milliseconds the server spent, -1 when not answered */
+    public double getServerMillis() {
+        return serverMillis;
+    }
+
+    /** @return null when succeeded */
+    public Throwable getError() {
+        return error;
+    }
+
+    /** */
+    void addRequestBytes(long n) {
+        requestBytes = Math.max(requestBytes, 0) + n;
+    }
+
+    /** */
+    void addResponseBytes(long n) {
+        responseBytes = Math.max(responseBytes, 0) + n;
+    }
+
+    /** */
+    void setStatus(int status) {
+        this.status = status;
+    }
+
+    /** @param serverTiming value of {@link #HEADER_SERVER_TIMING}, durations are summed */
+    void setServerTiming(String serverTiming) {
+        if (serverTiming == null) {
+            return;
+        }
+        double millis = 0;
+        Matcher matcher = DURATION.matcher(serverTiming);
+        boolean found = false;
+        while (matcher.find()) {
+            millis += Double.parseDouble(matcher.group(1));
+            found = true;
+        }
+        if (found) {
+            serverMillis = millis;
+        }
+    }
+
+    /** */
+    void end(Throwable error) {
+        this.end = System.nanoTime();
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [%s] %d %.1fms (server %.1fms) %d/%d bytes%s",
+                method, traceId, status, getElapsed() / 1e6, serverMillis, requestBytes, responseBytes,
+                error != null ? " " + error : "");
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+import jakarta.ws.rs.client.ClientResponseContext;
+import jakarta.ws.rs.client.ClientResponseFilter;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.ReaderInterceptor;
+import jakarta.ws.rs.ext.ReaderInterceptorContext;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+
+/**
+ * RpcCallFilter. fills the {@link RpcCall} carried by an invocation.
+ * <p>
+ * sends the trace id, receives the status and the server timing, and counts body bytes.
+ * invocations without a call pass through.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@Provider
+public class RpcCallFilter implements ClientRequestFilter, ClientResponseFilter, WriterInterceptor, ReaderInterceptor {
+
+    @Override
+    public void filter(ClientRequestContext request) {
+        if (request.getProperty(RpcCall.PROPERTY) instanceof RpcCall call) {
+            request.getHeaders().putSingle(RpcCall.HEADER_TRACE_ID, call.getTraceId());
+        }
+    }
+
+    @Override
+    public void filter(ClientRequestContext request, ClientResponseContext response) {
+        if (request.getProperty(RpcCall.PROPERTY) instanceof RpcCall call) {
+            call.setStatus(response.getStatus());
+            call.setServerTiming(response.getHeaderString(RpcCall.HEADER_SERVER_TIMING));
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        if (context.getProperty(RpcCall.PROPERTY) instanceof RpcCall call) {
+            call.addRequestBytes(0);
+            context.setOutputStream(new FilterOutputStream(context.getOutputStream()) {
+                @Override public void write(int b) throws IOException {
+                    out.write(b);
+                    call.addRequestBytes(1);
+                }
+                @Override public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    call.addRequestBytes(len);
+                }
+            });
+        }
+        context.proceed();
+    }
+
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+        if (context.getProperty(RpcCall.PROPERTY) instanceof RpcCall call) {
+            call.addResponseBytes(0);
+            context.setInputStream(new FilterInputStream(context.getInputStream()) {
+                @Override public int read() throws IOException {
+                    int b = in.read();
+                    if (b != -1) {
+                        call.addResponseBytes(1);
+                    }
+                    return b;
+                }
+                @Override public int read(byte[] b, int off, int len) throws IOException {
+                    int n = in.read(b, off, len);
+                    if (n > 0) {
+                        call.addResponseBytes(n);
+                    }
+                    return n;
+                }
+            });
+        }
+        return context.proceed();
+    }
+}
@@ -7,33 +7,49 @@
 package vavi.speech.rpc.jsapi2.client;
 
 
+import java.io.BufferedInputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.speech.AudioException;
 import javax.speech.AudioManager;
 import javax.speech.AudioSegment;
 import javax.speech.EngineException;
+import javax.speech.EnginePropertyEvent;
 import javax.speech.EnginePropertyListener;
 import javax.speech.EngineStateException;
 import javax.speech.SpeechEventExecutor;
 import javax.speech.SpeechLocale;
 import javax.speech.VocabularyManager;
 import javax.speech.synthesis.Speakable;
+import javax.speech.synthesis.SpeakableEvent;
 import javax.speech.synthesis.SpeakableException;
+import javax.speech.synthesis.SynthesizerEvent;
 import javax.speech.synthesis.SynthesizerProperties;
 import javax.speech.synthesis.Voice;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import jakarta.ws.rs.client.Client;
-import jakarta.ws.rs.client.ClientBuilder;
-import jakarta.ws.rs.client.Entity;
-import jakarta.ws.rs.client.WebTarget;
-import jakarta.ws.rs.core.MediaType;
-import jakarta.ws.rs.core.MultivaluedHashMap;
 
 import static java.lang.System.getLogger;
 
@@ -56,33 +72,171 @@ public class RpcClient implements Closeable {
     /** */
     private static Gson gson = new GsonBuilder().create();
 
+    /** "http" or "websocket" */
+    private static String transportName = "http";
+
     /* */
     static {
         String url = System.getProperty("vavi.speech.rpc.url");
         if (url != null) {
             RpcClient.url = url;
         }
+        transportName = System.getProperty("vavi.speech.rpc.transport", transportName);
     }
 
-    /** rest */
-    private final Client client;
+    /** */
+    private final Transport transport;
 
-    /** rest address */
-    private final WebTarget target;
+    /** session handle given by the server, null means the server's default engine */
+    private volatile String session;
 
-    /** */
+    /** uses the transport specified by the system property "vavi.speech.rpc.transport" */
     public RpcClient() {
-        try {
-            client = ClientBuilder.newClient(); // DON'T CLOSE
-            target = client.target(url);
-        } catch (Exception e) {
-            throw new IllegalStateException("RpcClient is not available at " + url, e);
-        }
+        this("websocket".equals(transportName) ? new WebSocketTransport(url) : new HttpTransport(url));
+    }
+
+    /** */
+    public RpcClient(Transport transport) {
+        this.transport = transport;
     }
 
     @Override
     public void close() throws IOException {
-        client.close();
+        closeSession();
+        transport.close();
+    }
+
+    /** milliseconds an utterance may wait on the server, 0 is the server's default */
+    private volatile long deadline;
+
+    /**
+     * Utterances spoken later are dropped by the server when they do not start within the time.
+     * the priority class of utterances is given by {@link SynthesizerProperties#setPriority(int)}.
+     *
+     * @param deadline milliseconds, 0 is the server's default
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /** @return parameters with the session handle */
+    private Map<String, Object> params(Object... keyValues) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("session", session);
+        if (deadline > 0) {
+            params.put("deadline", deadline);
+        }
+        for (int i = 0; i < keyValues.length; i += 2) {
+            params.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return params;
+    }
+
+    /**
+     * @param type {@link String} for a text body, {@link Void} for no result, others are decoded by the transport
+     * @param keyValues parameter names and values alternately
+     */
+    private <T> T call(String method, Class<T> type, Object... keyValues) {
+        flushProperties();
+        return traced(method, call -> transport.call(call, params(keyValues), type));
+    }
+
+    /**
+     * Calls without blocking the calling thread, safe on virtual threads.
+     * dependent stages without an executor may run on a transport thread.
+     */
+    private <T> CompletableFuture<T> callAsync(String method, Class<T> type, Object... keyValues) {
+        flushProperties();
+        RpcCall call = new RpcCall(method);
+        fireStart(call);
+        CompletableFuture<T> future;
+        try {
+            future = transport.callAsync(call, params(keyValues), type);
+        } catch (RuntimeException e) {
+            fireEnd(call, e);
+            throw e;
+        }
+        return future.whenComplete((result, t) -> fireEnd(call, t));
+    }
+
+    /** */
+    private final List<RpcListener> rpcListeners = new CopyOnWriteArrayList<>();
+
+    /** observes timings, sizes and errors of calls */
+    public void addRpcListener(RpcListener listener) {
+        rpcListeners.add(listener);
+    }
+
+    /** */
+    public void removeRpcListener(RpcListener listener) {
+        rpcListeners.remove(listener);
+    }
+
+    /** calls the transport notifying listeners */
+    private <T> T traced(String method, Function<RpcCall, T> invocation) {
+        RpcCall call = new RpcCall(method);
+        fireStart(call);
+        Throwable error = null;
+        try {
+            return invocation.apply(call);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            fireEnd(call, error);
+        }
+    }
+
+    /** */
+    private void fireStart(RpcCall call) {
+        for (RpcListener listener : rpcListeners) {
+            try {
+                listener.onStart(call);
+            } catch (RuntimeException e) {
+logger.log(Level.WARNING, e.getMessage(), e);
+            }
+        }
+    }
+
+    /** */
+    private void fireEnd(RpcCall call, Throwable error) {
+        call.end(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+logger.log(Level.TRACE, call);
+        for (RpcListener listener : rpcListeners) {
+            try {
+                listener.onEnd(call);
+            } catch (RuntimeException e) {
+logger.log(Level.WARNING, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Opens a session which owns its own engine on the server.
+     * does nothing when a session is already opened.
+     *
+     * @param modeName remote synthesizer mode class name
+     */
+    public void open(String modeName) {
+        if (session == null) {
+            session = call("open", String.class, "modeName", modeName);
+            properties = null;
+logger.log(Level.DEBUG, "session: " + session);
+        }
+    }
+
+    /** Closes the session if opened. */
+    public void closeSession() {
+        if (session != null) {
+            call("close", Void.class);
+            session = null;
+            properties = null;
+        }
+    }
+
+    /** @return session handle, null when not opened */
+    public String getSession() {
+        return session;
     }
 
     /** DTO for {@link Voice} */
@@ -115,6 +269,8 @@ public class RpcClient implements Closeable {
         public int gender;
         public int age;
         public int variant;
+        /** mode class name of the engine, set by the voice catalog */
+        public String modeName;
         public Voice toVoice() {
             return new Voice(locale != null ? locale.toSpeechLocale() : null, name, gender, age, variant);
         }
@@ -122,14 +278,68 @@ public class RpcClient implements Closeable {
 
     /** */
     public Voice[] getVoices(String modeName) {
-        String json = target.path("/jsapi2/getVoices")
-                .queryParam("modeName", modeName)
-                .request()
-                .get(String.class);
-        VoiceDTO[] voices = gson.fromJson(json, VoiceDTO[].class);
+        VoiceDTO[] voices = call("getVoices", VoiceDTO[].class, "modeName", modeName);
+        return Arrays.stream(voices).map(VoiceDTO::toVoice).toArray(Voice[]::new);
+    }
+
+    /** @see #getVoices(String) */
+    public CompletableFuture<Voice[]> getVoicesAsync(String modeName) {
+        return callAsync("getVoices", VoiceDTO[].class, "modeName", modeName)
+                .thenApply(voices -> Arrays.stream(voices).map(VoiceDTO::toVoice).toArray(Voice[]::new));
+    }
+
+    /**
+     * Finds voices of the mode in the server's voice catalog, no engine is selected.
+     *
+     * @param require voices matching this are returned as {@link Voice#match(Voice)}, null matches all
+     */
+    public Voice[] getVoices(String modeName, Voice require) {
+        VoiceDTO[] voices = catalog(modeName, require);
         return Arrays.stream(voices).map(VoiceDTO::toVoice).toArray(Voice[]::new);
     }
 
+    /**
+     * Gets voices of all engines in the server's voice catalog at once.
+     *
+     * @return key: mode class name
+     */
+    public Map<String, Voice[]> getVoiceCatalog() {
+        Map<String, List<Voice>> grouped = new LinkedHashMap<>();
+        for (VoiceDTO voice : catalog(null, null)) {
+            grouped.computeIfAbsent(voice.modeName, k -> new ArrayList<>()).add(voice.toVoice());
+        }
+        Map<String, Voice[]> result = new LinkedHashMap<>();
+        grouped.forEach((k, v) -> result.put(k, v.toArray(Voice[]::new)));
+        return result;
+    }
+
+    /** the server matches don't care fields as all */
+    private VoiceDTO[] catalog(String modeName, Voice require) {
+        String locale = null;
+        String name = null;
+        Integer gender = null;
+        Integer age = null;
+        Integer variant = null;
+        if (require != null) {
+            SpeechLocale l = require.getSpeechLocale();
+            if (l != null && l.getLanguage() != null && !l.getLanguage().isEmpty()) {
+                locale = l.getLanguage();
+                if (l.getCountry() != null && !l.getCountry().isEmpty()) {
+                    locale += "_" + l.getCountry();
+                    if (l.getVariant() != null && !l.getVariant().isEmpty()) {
+                        locale += "_" + l.getVariant();
+                    }
+                }
+            }
+            name = require.getName();
+            gender = require.getGender() != Voice.GENDER_DONT_CARE ? require.getGender() : null;
+            age = require.getAge() != Voice.AGE_DONT_CARE ? require.getAge() : null;
+            variant = require.getVariant() != Voice.VARIANT_DONT_CARE ? require.getVariant() : null;
+        }
+        return call("getVoiceCatalog", VoiceDTO[].class,
+                "modeName", modeName, "locale", locale, "name", name, "gender", gender, "age", age, "variant", variant);
+    }
+
 //    public boolean cancel() throws EngineStateException {
 //        target.path("/jsapi2/cancel")
 //                .request()
@@ -138,132 +348,290 @@ public class RpcClient implements Closeable {
 //    }
 
     public boolean cancel(int id) throws EngineStateException {
-        return target.path("/jsapi2/cancel")
-                .queryParam("id", id)
-                .request()
-                .get(Boolean.class);
+        return call("cancel", Boolean.class, "id", id);
+    }
+
+    /** @see #cancel(int) */
+    public CompletableFuture<Boolean> cancelAsync(int id) {
+        return callAsync("cancel", Boolean.class, "id", id);
     }
 
     public boolean cancelAll() throws EngineStateException {
-        return target.path("/jsapi2/cancelAll")
-                .request()
-                .get(Boolean.class);
+        return call("cancelAll", Boolean.class);
     }
 
     public String getPhonemes(String text) throws EngineStateException {
-        return target.path("/jsapi2/getPhonemes")
-                .queryParam("text", text)
-                .request()
-                .get(String.class);
+        return call("getPhonemes", String.class, "text", text);
     }
 
-    /** DTO for {@link SynthesizerProperties} */
+    /** DTO for {@link SpeakableEvent} and {@link SynthesizerEvent} */
+    public static class SpeechEventDTO {
+        public static final String SPEAKABLE = "speakable";
+        public static final String SYNTHESIZER = "synthesizer";
+        public static final String PROPERTIES = "properties";
+        public SpeechEventDTO() {}
+        public SpeechEventDTO(SpeakableEvent event) {
+            type = SPEAKABLE;
+            id = event.getId();
+            requestId = event.getRequestId();
+            textInfo = event.getTextInfo();
+            audioPosition = event.getAudioPosition();
+        }
+        public SpeechEventDTO(EnginePropertyEvent event) {
+            type = PROPERTIES;
+            propertyName = event.getPropertyName();
+        }
+        public SpeechEventDTO(SynthesizerEvent event) {
+            type = SYNTHESIZER;
+            id = event.getId();
+            oldEngineState = event.getOldEngineState();
+            newEngineState = event.getNewEngineState();
+            topOfQueueChanged = event.isTopOfQueueChanged();
+        }
+        /** {@link #SPEAKABLE}, {@link #SYNTHESIZER} or {@link #PROPERTIES} */
+        public String type;
+        /** event id */
+        public int id;
+        public int requestId;
+        public String textInfo;
+        public int audioPosition;
+        public long oldEngineState;
+        public long newEngineState;
+        public boolean topOfQueueChanged;
+        /** for {@link #PROPERTIES}, null means any */
+        public String propertyName;
+    }
+
+    /**
+     * Receives events of the session pushed by the server.
+     * a session is required.
+     *
+     * @return close to stop receiving
+     */
+    public Closeable subscribe(Consumer<SpeechEventDTO> listener) {
+        return transport.subscribe(params(), json -> listener.accept(gson.fromJson(json, SpeechEventDTO.class)));
+    }
+
+    /** DTO for {@link SynthesizerProperties}, null fields are not changed by a patch */
     public static class SynthesizerPropertiesDTO {
-        SynthesizerPropertiesDTO() {}
+        public SynthesizerPropertiesDTO() {}
         public SynthesizerPropertiesDTO(SynthesizerProperties sp) {
-            voice = new VoiceDTO(sp.getVoice());
+            voice = sp.getVoice() != null ? new VoiceDTO(sp.getVoice()) : null;
             volume = sp.getVolume();
+            pitch = sp.getPitch();
+            pitchRange = sp.getPitchRange();
+            speakingRate = sp.getSpeakingRate();
+            interruptibility = sp.getInterruptibility();
+            priority = sp.getPriority();
+            base = sp.getBase();
         }
+        /** for a patch, applied before the others */
+        public Boolean reset;
         public VoiceDTO voice;
-        public int volume;
+        public Integer volume;
+        public Integer pitch;
+        public Integer pitchRange;
+        public Integer speakingRate;
+        public Integer interruptibility;
+        public Integer priority;
+        public String base;
+        /** sets not null fields */
+        public void applyTo(SynthesizerProperties sp) {
+            if (Boolean.TRUE.equals(reset)) sp.reset();
+            if (voice != null) sp.setVoice(voice.toVoice());
+            if (volume != null) sp.setVolume(volume);
+            if (pitch != null) sp.setPitch(pitch);
+            if (pitchRange != null) sp.setPitchRange(pitchRange);
+            if (speakingRate != null) sp.setSpeakingRate(speakingRate);
+            if (interruptibility != null) sp.setInterruptibility(interruptibility);
+            if (priority != null) sp.setPriority(priority);
+            if (base != null) sp.setBase(base);
+        }
     }
 
-    /** setting property is reflected on server side, implementations are pertly */
-    class RcpSynthesizerProperties implements SynthesizerProperties {
-        RcpSynthesizerProperties(SynthesizerPropertiesDTO sp) {
-            this.voice = sp.voice.toVoice();
-            this.volume = sp.volume;
+    /** properties read from the server, null when stale */
+    private volatile SynthesizerPropertiesDTO properties;
+
+    /** properties set but not sent yet, guarded by {@link #propertiesLock} */
+    private SynthesizerPropertiesDTO pendingProperties;
+
+    /** */
+    private final ReentrantLock propertiesLock = new ReentrantLock();
+
+    /** */
+    private final RcpSynthesizerProperties synthesizerProperties = new RcpSynthesizerProperties();
+
+    /** @return a property, the one set but not sent yet wins */
+    private <T> T property(Function<SynthesizerPropertiesDTO, T> getter) {
+        propertiesLock.lock();
+        try {
+            T value = pendingProperties != null ? getter.apply(pendingProperties) : null;
+            if (value != null) {
+                return value;
+            }
+            SynthesizerPropertiesDTO properties = this.properties;
+            if (properties == null) {
+                properties = traced("getSynthesizerProperties", call -> transport.call(call, params(), SynthesizerPropertiesDTO.class));
+                this.properties = properties;
+            }
+            return getter.apply(properties);
+        } finally {
+            propertiesLock.unlock();
         }
+    }
 
-        Voice voice;
-        int volume;
+    /** keeps a property until the next call */
+    private void setProperty(Consumer<SynthesizerPropertiesDTO> setter) {
+        propertiesLock.lock();
+        try {
+            if (pendingProperties == null) {
+                pendingProperties = new SynthesizerPropertiesDTO();
+            }
+            setter.accept(pendingProperties);
+        } finally {
+            propertiesLock.unlock();
+        }
+    }
 
-        @Override public void setInterruptibility(int level) throws IllegalArgumentException {
+    /** sends properties set so far in a single patch */
+    public void flushProperties() {
+        SynthesizerPropertiesDTO pending;
+        propertiesLock.lock();
+        try {
+            pending = pendingProperties;
+            pendingProperties = null;
+            if (pending == null) {
+                return;
+            }
+            properties = traced("synthesizerProperties", call -> transport.call(call, params("body", pending), SynthesizerPropertiesDTO.class));
+        } finally {
+            propertiesLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the local snapshot, called when the server pushes a property change.
+     *
+     * @param event a property change, null for any
+     */
+    public void invalidateProperties(SpeechEventDTO event) {
+        properties = null;
+        if (event != null && event.propertyName != null) {
+            synthesizerProperties.fire(event.propertyName);
+        }
+    }
+
+    /**
+     * A snapshot of the server's properties. setters are kept locally and sent in a single
+     * patch before the next call, so an illegal value is reported by the next call.
+     */
+    class RcpSynthesizerProperties implements SynthesizerProperties {
+
+        /** */
+        private final List<EnginePropertyListener> listeners = new CopyOnWriteArrayList<>();
+
+        /** */
+        void fire(String propertyName) {
+            EnginePropertyEvent event = new EnginePropertyEvent(this, propertyName, null, null);
+            listeners.forEach(l -> l.propertyUpdate(event));
+        }
 
+        @Override public void setInterruptibility(int level) throws IllegalArgumentException {
+            setProperty(p -> p.interruptibility = level);
         }
 
         @Override public int getInterruptibility() {
-            return 0;
+            return property(p -> p.interruptibility);
         }
 
         @Override public void setPitch(int hertz) throws IllegalArgumentException {
-
+            setProperty(p -> p.pitch = hertz);
         }
 
         @Override public int getPitch() {
-            return 0;
+            return property(p -> p.pitch);
         }
 
         @Override public void setPitchRange(int hertz) throws IllegalArgumentException {
-
+            setProperty(p -> p.pitchRange = hertz);
         }
 
         @Override public int getPitchRange() {
-            return 0;
+            return property(p -> p.pitchRange);
         }
 
         @Override public void setSpeakingRate(int wpm) throws IllegalArgumentException {
-
+            setProperty(p -> p.speakingRate = wpm);
         }
 
         @Override public int getSpeakingRate() {
-            return 0;
+            return property(p -> p.speakingRate);
         }
 
         @Override public void setVoice(Voice voice) throws IllegalArgumentException {
-            MultivaluedHashMap<String, String> formParams = new MultivaluedHashMap<>();
-            formParams.putSingle("voice", gson.toJson(new VoiceDTO(voice)));
-            target.path("/jsapi2/synthesizerProperties/voice")
-                    .request()
-                    .post(Entity.entity(formParams, MediaType.APPLICATION_FORM_URLENCODED_TYPE), String.class);
+            setProperty(p -> p.voice = new VoiceDTO(voice));
         }
 
         @Override public Voice getVoice() {
-            return voice;
+            VoiceDTO voice = property(p -> p.voice);
+            return voice != null ? voice.toVoice() : null;
         }
 
         @Override public void setVolume(int volume) throws IllegalArgumentException {
-            target.path("/jsapi2/synthesizerProperties/volume")
-                    .queryParam("volume", volume)
-                    .request()
-                    .get();
+            setProperty(p -> p.volume = volume);
         }
 
         @Override public int getVolume() {
-            return volume;
+            return property(p -> p.volume);
         }
 
-        @Override public void addEnginePropertyListener(EnginePropertyListener listener) {}
+        @Override public void addEnginePropertyListener(EnginePropertyListener listener) {
+            listeners.add(listener);
+        }
 
-        @Override public void removeEnginePropertyListener(EnginePropertyListener listener) {}
+        @Override public void removeEnginePropertyListener(EnginePropertyListener listener) {
+            listeners.remove(listener);
+        }
 
         @Override public int getPriority() {
-            return 0;
+            return property(p -> p.priority);
         }
 
         @Override public void setPriority(int priority) throws IllegalArgumentException {
-
+            setProperty(p -> p.priority = priority);
         }
 
+        /** properties set before are discarded */
         @Override public void reset() {
-
+            propertiesLock.lock();
+            try {
+                pendingProperties = new SynthesizerPropertiesDTO();
+                pendingProperties.reset = true;
+                properties = null;
+            } finally {
+                propertiesLock.unlock();
+            }
+            flushProperties();
         }
 
         @Override public void setBase(String uri) throws IllegalArgumentException {
-
+            setProperty(p -> p.base = uri);
         }
 
         @Override public String getBase() {
-            return null;
+            return property(p -> p.base);
         }
     }
 
+    /**
+     * @return the same proxy every time, without a session the snapshot is read again
+     *         because others share the server's default engine
+     */
     public SynthesizerProperties getSynthesizerProperties() {
-        String json = target.path("/jsapi2/getSynthesizerProperties")
-                .request()
-                .get(String.class);
-        SynthesizerPropertiesDTO dto = gson.fromJson(json, SynthesizerPropertiesDTO.class);
-        return new RcpSynthesizerProperties(dto);
+        if (session == null) {
+            properties = null;
+        }
+        return synthesizerProperties;
     }
 
 //    public void allocate() throws AudioException, EngineException, EngineStateException, SecurityException {
@@ -273,46 +641,30 @@ public class RpcClient implements Closeable {
 //    }
 
     public void allocate(int mode) throws IllegalArgumentException, AudioException, EngineException, EngineStateException, SecurityException {
-        target.path("/jsapi2/allocate")
-                .queryParam("mode", mode)
-                .request()
-                .get();
+        call("allocate", Void.class, "mode", mode);
     }
 
+    /** the session's engine is released on the server */
     public void deallocate() throws AudioException, EngineException, EngineStateException {
-        client.close();
-logger.log(Level.INFO, "ignore: deallocate()V");
-//        target.path("/jsapi2/deallocate")
-//                .request()
-//                .get();
+        closeSession();
     }
 
+    /** the session's engine is released on the server */
     public void deallocate(int mode) throws IllegalArgumentException, AudioException, EngineException, EngineStateException {
-        client.close();
-logger.log(Level.INFO, "ignore: deallocate(I)V");
-//        target.path("/jsapi2/deallocate")
-//                .queryParam("mode", mode)
-//                .request()
-//                .get();
+logger.log(Level.DEBUG, "ignore mode: " + mode);
+        closeSession();
     }
 
     public void pause() throws EngineStateException {
-        target.path("/jsapi2/pause")
-                .request()
-                .get();
+        call("pause", Void.class);
     }
 
     public boolean resume() throws EngineStateException {
-        return target.path("/jsapi2/resume")
-                .request()
-                .get(Boolean.class);
+        return call("resume", Boolean.class);
     }
 
     public boolean testEngineState(long state) throws IllegalArgumentException {
-        return target.path("/jsapi2/testEngineState")
-                .queryParam("state", state)
-                .request()
-                .get(Boolean.class);
+        return call("testEngineState", Boolean.class, "state", state);
     }
 
 //    public long waitEngineState(long state) throws InterruptedException, IllegalArgumentException, IllegalStateException {
@@ -323,18 +675,51 @@ logger.log(Level.INFO, "ignore: deallocate(I)V");
 //        return 0;
 //    }
 
+    /** a wait is split into requests shorter than this, not to be timed out by the http client */
+    private static final long WAIT_SLICE = 20_000;
+
+    /**
+     * No thread waits, a long wait is split as same as {@link #waitEngineState(long, long)}.
+     *
+     * @param timeout milliseconds, -1 means forever
+     * @return completed by the engine state
+     */
+    public CompletableFuture<Long> waitEngineStateAsync(long state, long timeout) {
+        long deadline = timeout < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+        return waitUntil(state, deadline);
+    }
+
+    /** a slice of {@link #waitEngineStateAsync(long, long)} */
+    private CompletableFuture<Long> waitUntil(long state, long deadline) {
+        long slice = Math.min(WAIT_SLICE, Math.max(0, deadline - System.currentTimeMillis()));
+        return callAsync("waitEngineState", Long.class, "state", state, "timeout", slice).thenCompose(engineState -> {
+            if ((engineState & state) == state || System.currentTimeMillis() >= deadline) {
+                return CompletableFuture.completedFuture(engineState);
+            }
+            return waitUntil(state, deadline);
+        });
+    }
+
+    /**
+     * @param timeout milliseconds, -1 means forever
+     * @return the engine state
+     */
     public long waitEngineState(long state, long timeout) throws InterruptedException, IllegalArgumentException, IllegalStateException {
-        return target.path("/jsapi2/waitEngineState")
-                .queryParam("state", state)
-                .queryParam("timeout", timeout)
-                .request()
-                .get(Long.class);
+        long deadline = timeout < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+        while (true) {
+            long slice = Math.min(WAIT_SLICE, Math.max(0, deadline - System.currentTimeMillis()));
+            long engineState = call("waitEngineState", Long.class, "state", state, "timeout", slice);
+            if ((engineState & state) == state || System.currentTimeMillis() >= deadline) {
+                return engineState;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
     }
 
     public AudioManager getAudioManager() {
-        String json = target.path("/jsapi2/getAudioManager")
-                .request()
-                .get(String.class);
+        String json = call("getAudioManager", String.class);
         return gson.fromJson(json, AudioManager.class);
     }
 
@@ -345,83 +730,143 @@ logger.log(Level.INFO, "ignore: deallocate(I)V");
 //        return gson.fromJson(json, EngineMode.class);
 //    }
 
+    /** @see #getEngineState() */
+    public CompletableFuture<Long> getEngineStateAsync() {
+        return callAsync("getEngineState", Long.class);
+    }
+
     public long getEngineState() {
-        return target.path("/jsapi2/getEngineState")
-                .request()
-                .get(Long.class);
+        return call("getEngineState", Long.class);
     }
 
     public VocabularyManager getVocabularyManager() {
-        String json = target.path("/jsapi2/getVocabularyManager")
-                .request()
-                .get(String.class);
+        String json = call("getVocabularyManager", String.class);
         return gson.fromJson(json, VocabularyManager.class);
     }
 
     public void setEngineMask(int mask) {
-        target.path("/jsapi2/setEngineMask")
-                .queryParam("mask", mask)
-                .request()
-                .get();
+        call("setEngineMask", Void.class, "mask", mask);
     }
 
     public int getEngineMask() {
-        return target.path("/jsapi2/getEngineMask")
-                .request()
-                .get(Integer.class);
+        return call("getEngineMask", Integer.class);
     }
 
     public SpeechEventExecutor getSpeechEventExecutor() {
-        String json = target.path("/jsapi2/getSpeechEventExecutor")
-                .request()
-                .get(String.class);
+        String json = call("getSpeechEventExecutor", String.class);
         return gson.fromJson(json, SpeechEventExecutor.class);
     }
 
     public void setSpeechEventExecutor(SpeechEventExecutor speechEventExecutor) {
-        target.path("/jsapi2/setSpeechEventExecutor")
-                .request()
-                .get();
+        call("setSpeechEventExecutor", Void.class);
     }
 
     public void setSpeakableMask(int mask) {
-        target.path("/jsapi2/setSpeakableMask")
-                .queryParam("mask", mask)
-                .request()
-                .get();
+        call("setSpeakableMask", Void.class, "mask", mask);
     }
 
     public int getSpeakableMask() {
-        return target.path("/jsapi2/getSpeakableMask")
-                .request()
-                .get(Integer.class);
+        return call("getSpeakableMask", Integer.class);
     }
 
     public int speak(AudioSegment audio) throws SpeakableException, EngineStateException, IllegalArgumentException {
-        return target.path("/jsapi2/speak")
-                .queryParam("audio", audio)
-                .request()
-                .get(Integer.class);
+        return call("speak", Integer.class, "audio", audio);
     }
 
     public int speak(Speakable speakable) throws SpeakableException, EngineStateException {
-        return target.path("/jsapi2/speak")
-                .queryParam("speakable", speakable)
-                .request()
-                .get(Integer.class);
+        return call("speak", Integer.class, "speakable", speakable);
     }
 
+    /** the text is posted as the request body */
     public int speak(String text) throws EngineStateException {
-        return target.path("/jsapi2/speak")
-                .queryParam("text", text)
-                .request()
-                .get(Integer.class);
+        return call("speak", int[].class, "body", text, "split", false)[0];
+    }
+
+    /**
+     * Streams the text to the server, each sentence is synthesized as soon as it arrives.
+     *
+     * @param text utf-8 plain text, closed by the transport
+     * @return speakable ids of sentences in order
+     */
+    public int[] speak(InputStream text) throws EngineStateException {
+        return call("speak", int[].class, "body", text);
+    }
+
+    /** @see #speak(String) */
+    public CompletableFuture<Integer> speakAsync(String text) {
+        return callAsync("speak", int[].class, "body", text, "split", false).thenApply(ids -> ids[0]);
+    }
+
+    /** @see #speak(List) */
+    public CompletableFuture<int[]> speakAsync(List<String> utterances) {
+        return callAsync("speakBatch", int[].class, "body", utterances.toArray(String[]::new));
+    }
+
+    /**
+     * Enqueues all utterances in one request.
+     *
+     * @return speakable ids in order
+     */
+    public int[] speak(List<String> utterances) throws EngineStateException {
+        return call("speakBatch", int[].class, "body", utterances.toArray(String[]::new));
+    }
+
+    /**
+     * Enqueues a document in one request, the server splits it into sentences at "。" and new lines.
+     *
+     * @return speakable ids in order
+     */
+    public int[] speakDocument(String document) throws EngineStateException {
+        return call("speakDocument", int[].class, "body", document);
+    }
+
+    /**
+     * Synthesizes the text on the server and receives the audio as a stream.
+     * a session is required.
+     *
+     * @return raw pcm audio, read while the server is synthesizing
+     */
+    public AudioInputStream speakAudio(String text) throws EngineStateException {
+        flushProperties();
+        Transport.Streamed streamed = traced("speakAudio", call -> transport.stream(call, params("text", text)));
+        AudioFormat format = RpcAudio.toAudioFormat(streamed.headers().get(RpcAudio.HEADER_MEDIA_LOCATOR));
+        return new AudioInputStream(streamed.body(), format, AudioSystem.NOT_SPECIFIED);
+    }
+
+    /**
+     * Synthesizes the text on the server without playback, faster than real time.
+     * the server splits the text into sentences and synthesizes them in parallel.
+     * a session is required.
+     *
+     * @param text posted as the request body
+     * @return wave audio, read while downloading
+     */
+    public AudioInputStream render(String text) throws EngineStateException, IOException {
+        flushProperties();
+        Transport.Streamed streamed = traced("render", call -> transport.stream(call, params("body", text)));
+        try {
+            return AudioSystem.getAudioInputStream(new BufferedInputStream(streamed.body()));
+        } catch (UnsupportedAudioFileException e) {
+            streamed.body().close();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Saves the audio rendered by the server as a wave file.
+     *
+     * @see #render(String)
+     */
+    public void render(String text, Path file) throws EngineStateException, IOException {
+        flushProperties();
+        Transport.Streamed streamed = traced("render", call -> transport.stream(call, params("body", text)));
+        try (InputStream in = streamed.body()) {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
+    /** the markup is posted as the request body */
     public int speakMarkup(String synthesisMarkup) throws SpeakableException, EngineStateException {
-        return target.path("/jsapi2/speak")
-                .queryParam("synthesisMarkup", synthesisMarkup)
-                .request()
-                .get(Integer.class);
+        return call("speakMarkup", Integer.class, "body", synthesisMarkup);
     }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.jnh.connector.JavaNetHttpClientProperties;
+import org.glassfish.jersey.jnh.connector.JavaNetHttpConnectorProvider;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * RpcClientFactory. http clients shared by all {@link RpcClient}s in a jvm.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.connector ... "apache" pooled http/1.1 (default), "jnh" java.net.http with http/2 (h2c),
+ *  "default" HttpURLConnection</li>
+ *  <li>vavi.speech.rpc.maxPerRoute ... pooled connections per server, default 16</li>
+ *  <li>vavi.speech.rpc.maxTotal ... pooled connections, default 64</li>
+ *  <li>vavi.speech.rpc.keepAlive ... seconds a pooled connection is kept, default 60</li>
+ *  <li>vavi.speech.rpc.connectTimeout ... milliseconds, default 5000</li>
+ *  <li>vavi.speech.rpc.readTimeout ... milliseconds, 0 is infinite, default 60000.
+ *  longer than the slice of {@link RpcClient#waitEngineState(long, long)}</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class RpcClientFactory {
+
+    private static final Logger logger = getLogger(RpcClientFactory.class.getName());
+
+    /** */
+    private RpcClientFactory() {}
+
+    /** */
+    private static String connector = "apache";
+
+    /** */
+    private static int maxPerRoute = 16;
+
+    /** */
+    private static int maxTotal = 64;
+
+    /** */
+    private static int keepAlive = 60;
+
+    /** */
+    private static int connectTimeout = 5000;
+
+    /** */
+    private static int readTimeout = 60000;
+
+    /* */
+    static {
+        connector = System.getProperty("vavi.speech.rpc.connector", connector);
+        maxPerRoute = Integer.parseInt(System.getProperty("vavi.speech.rpc.maxPerRoute", String.valueOf(maxPerRoute)));
+        maxTotal = Integer.parseInt(System.getProperty("vavi.speech.rpc.maxTotal", String.valueOf(maxTotal)));
+        keepAlive = Integer.parseInt(System.getProperty("vavi.speech.rpc.keepAlive", String.valueOf(keepAlive)));
+        connectTimeout = Integer.parseInt(System.getProperty("vavi.speech.rpc.connectTimeout", String.valueOf(connectTimeout)));
+        readTimeout = Integer.parseInt(System.getProperty("vavi.speech.rpc.readTimeout", String.valueOf(readTimeout)));
+    }
+
+    /** lazily created, guarded by {@link #lock} */
+    private static Client client;
+
+    /** lazily created, guarded by {@link #lock} */
+    private static HttpClient httpClient;
+
+    /** */
+    private static final ReentrantLock lock = new ReentrantLock();
+
+    /** @return the shared rest client, DON'T CLOSE */
+    public static Client getClient() {
+        lock.lock();
+        try {
+            if (client == null) {
+                client = newClient();
+logger.log(Level.DEBUG, "connector: " + connector + ", maxPerRoute: " + maxPerRoute + ", readTimeout: " + readTimeout);
+            }
+            return client;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the shared client for websockets, DON'T CLOSE */
+    public static HttpClient getHttpClient() {
+        lock.lock();
+        try {
+            if (httpClient == null) {
+                httpClient = HttpClient.newBuilder()
+                        .connectTimeout(Duration.ofMillis(connectTimeout))
+                        .build();
+            }
+            return httpClient;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return a new rest client configured by the system properties, owned by the caller */
+    public static Client newClient() {
+        ClientConfig config = new ClientConfig()
+                .property(ClientProperties.CONNECT_TIMEOUT, connectTimeout)
+                .property(ClientProperties.READ_TIMEOUT, readTimeout)
+                .register(CodecProvider.class)
+                .register(RpcCallFilter.class);
+        switch (connector) {
+            case "apache" -> {
+                PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager(keepAlive, TimeUnit.SECONDS);
+                pool.setDefaultMaxPerRoute(maxPerRoute);
+                pool.setMaxTotal(maxTotal);
+                config.connectorProvider(new ApacheConnectorProvider())
+                        .property(ApacheClientProperties.CONNECTION_MANAGER, pool);
+            }
+            case "jnh" -> config.connectorProvider(new JavaNetHttpConnectorProvider())
+                    .property(JavaNetHttpClientProperties.HTTP_VERSION, HttpClient.Version.HTTP_2);
+            default -> {}
+        }
+        return ClientBuilder.newClient(config);
+    }
+}
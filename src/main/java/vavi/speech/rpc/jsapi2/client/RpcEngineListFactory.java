@@ -6,7 +6,7 @@
 
 package vavi.speech.rpc.jsapi2.client;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import javax.speech.EngineList;
 import javax.speech.EngineMode;
@@ -26,20 +26,14 @@ public class RpcEngineListFactory implements EngineListFactory {
     @Override
     public EngineList createEngineList(EngineMode require) {
         if (require instanceof RpcSynthesizerMode synthesizerMode) {
-            RpcClient rpcClient = new RpcClient();
-            List<Voice> allVoices = List.of(rpcClient.getVoices(require.getModeName()));
-            List<Voice> voices = new ArrayList<>();
-            if (synthesizerMode.getVoices() == null) {
-                voices.addAll(allVoices);
-            } else {
-                for (Voice availableVoice : allVoices) {
-                    for (Voice requiredVoice : synthesizerMode.getVoices()) {
-                        if (availableVoice.match(requiredVoice)) {
-                            voices.add(availableVoice);
-                        }
-                    }
-                }
-            }
+            RpcClient rpcClient = new RpcClient(); // sockets are shared by RpcClientFactory
+            // voices of the mode are fetched from the server's voice catalog at once,
+            // those matching any required voice are kept in the catalogued order
+            Voice[] all = rpcClient.getVoices(require.getModeName(), null);
+            Voice[] required = synthesizerMode.getVoices();
+            List<Voice> voices = required == null ? List.of(all) : Arrays.stream(all)
+                    .filter(voice -> Arrays.stream(required).anyMatch(voice::match))
+                    .toList();
             SynthesizerMode[] features = new SynthesizerMode[] {
                 new RpcSynthesizerMode(synthesizerMode.getEngineName(),
                                        synthesizerMode.getModeName(),
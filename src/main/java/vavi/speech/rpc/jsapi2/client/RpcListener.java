@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+
+/**
+ * RpcListener. observes calls of {@link RpcClient}.
+ * <p>
+ * listeners are called on the calling thread or a transport thread, they must return quickly.
+ *
+ * <pre>
+ * client.addRpcListener(new RpcListener() {
+ *     &#64;Override public void onEnd(RpcCall call) {
+ *         System.err.println(call);
+ *     }
+ * });
+ * </pre>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public interface RpcListener {
+
+    /** the call is about to be sent */
+    default void onStart(RpcCall call) {}
+
+    /**
+     * the response is received or the call failed, see {@link RpcCall#getError()}.
+     * for a stream, called when the headers are received.
+     */
+    default void onEnd(RpcCall call) {}
+}
@@ -6,9 +6,21 @@
 
 package vavi.speech.rpc.jsapi2.client;
 
+import java.io.Closeable;
 import java.lang.System.Logger;
-import java.util.ArrayList;
+import java.lang.System.Logger.Level;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.sound.sampled.AudioInputStream;
 import javax.speech.AudioException;
 import javax.speech.AudioManager;
 import javax.speech.AudioSegment;
@@ -18,9 +30,11 @@ import javax.speech.EngineStateException;
 import javax.speech.SpeechEventExecutor;
 import javax.speech.VocabularyManager;
 import javax.speech.synthesis.Speakable;
+import javax.speech.synthesis.SpeakableEvent;
 import javax.speech.synthesis.SpeakableException;
 import javax.speech.synthesis.SpeakableListener;
 import javax.speech.synthesis.Synthesizer;
+import javax.speech.synthesis.SynthesizerEvent;
 import javax.speech.synthesis.SynthesizerListener;
 import javax.speech.synthesis.SynthesizerProperties;
 
@@ -53,9 +67,207 @@ public final class RpcSynthesizer implements Synthesizer {
         this.rpcClient = mode.getRpcClient();
     }
 
-    private final List<SpeakableListener> speakableListeners = new ArrayList<>();
+    /** where synthesized audio goes */
+    public enum AudioMode {
+        /** played on the server's device */
+        SERVER,
+        /** received and played on the local device */
+        PLAY,
+        /** received and saved as wave files into the audio directory */
+        SAVE
+    }
+
+    /** */
+    private volatile AudioMode audioMode = AudioMode.SERVER;
+
+    /** for {@link AudioMode#SAVE} */
+    private volatile Path audioDirectory = Paths.get(".");
+
+    /** plays or saves received audio in order */
+    private final ExecutorService audioExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "rpc-synthesizer-audio");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** the last local playback, guarded by {@link #audioLock} */
+    private CompletableFuture<Void> lastAudio = CompletableFuture.completedFuture(null);
+
+    /** not to pin virtual threads */
+    private final ReentrantLock audioLock = new ReentrantLock();
+
+    /** ids for local playback */
+    private final AtomicInteger audioIds = new AtomicInteger();
+
+    /** @param audioMode where synthesized audio of {@link #speak(String, SpeakableListener)} goes */
+    public void setAudioMode(AudioMode audioMode) {
+        this.audioMode = audioMode;
+    }
+
+    /** */
+    public AudioMode getAudioMode() {
+        return audioMode;
+    }
+
+    /** @param audioDirectory where wave files are saved on {@link AudioMode#SAVE}, named as "id.wav" */
+    public void setAudioDirectory(Path audioDirectory) {
+        this.audioDirectory = audioDirectory;
+    }
+
+    /** receives the audio and plays or saves it locally after the previous one */
+    private int speakLocally(String text, AudioMode audioMode, SpeakableListener listener) {
+        audioLock.lock();
+        try {
+            return speakLocally0(text, audioMode, listener);
+        } finally {
+            audioLock.unlock();
+        }
+    }
+
+    /** */
+    private int speakLocally0(String text, AudioMode audioMode, SpeakableListener listener) {
+        int id = audioIds.incrementAndGet();
+        Path path = audioDirectory.resolve(id + ".wav");
+        lastAudio = lastAudio.thenRunAsync(() -> {
+            fireSpeakableEvent(new SpeakableEvent(this, SpeakableEvent.SPEAKABLE_STARTED, id, text, 0), listener);
+            try (AudioInputStream ais = rpcClient.speakAudio(text)) {
+                if (audioMode == AudioMode.PLAY) {
+                    RpcAudio.play(ais);
+                } else {
+                    RpcAudio.save(ais, path);
+                }
+            } catch (Exception e) {
+logger.log(Level.WARNING, e.getMessage(), e);
+            }
+            fireSpeakableEvent(new SpeakableEvent(this, SpeakableEvent.SPEAKABLE_ENDED, id, text, 0), listener);
+        }, audioExecutor);
+        return id;
+    }
+
+    /** waits local playback */
+    private void waitLocally() {
+        CompletableFuture<Void> lastAudio;
+        audioLock.lock();
+        try {
+            lastAudio = this.lastAudio;
+        } finally {
+            audioLock.unlock();
+        }
+        lastAudio.join();
+    }
+
+    private final List<SpeakableListener> speakableListeners = new CopyOnWriteArrayList<>();
+
+    private final List<SynthesizerListener> synthesizerListeners = new CopyOnWriteArrayList<>();
+
+    /** listeners given to speak methods, key: speakable id */
+    private final Map<Integer, SpeakableListener> speakableListenersById = new ConcurrentHashMap<>();
+
+    /** an id is registered before the events of it are dispatched */
+    private final ReentrantLock speakLock = new ReentrantLock();
+
+    /** default event thread */
+    private final ExecutorService eventExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "rpc-synthesizer-event");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** listeners are called on this */
+    private volatile SpeechEventExecutor speechEventExecutor = eventExecutor::execute;
+
+    /** events pushed by the server, null when not allocated */
+    private Closeable subscription;
+
+    /** starts receiving events of the session */
+    private void subscribe() {
+        try {
+            subscription = rpcClient.subscribe(this::dispatch);
+        } catch (Exception e) {
+logger.log(Level.WARNING, "no events: " + e.getMessage());
+        }
+    }
+
+    /** stops receiving events */
+    private void unsubscribe() {
+        if (subscription != null) {
+            try {
+                subscription.close();
+            } catch (Exception e) {
+logger.log(Level.DEBUG, e.getMessage());
+            }
+            subscription = null;
+        }
+    }
+
+    /** converts an event pushed by the server, called on the transport thread */
+    private void dispatch(RpcClient.SpeechEventDTO event) {
+        if (RpcClient.SpeechEventDTO.SPEAKABLE.equals(event.type)) {
+            fireSpeakableEvent(new SpeakableEvent(this, event.id, event.requestId, event.textInfo, event.audioPosition), null);
+        } else if (RpcClient.SpeechEventDTO.PROPERTIES.equals(event.type)) {
+            execute(() -> rpcClient.invalidateProperties(event));
+        } else {
+            fireSynthesizerEvent(new SynthesizerEvent(this, event.id, event.oldEngineState, event.newEngineState, null, event.topOfQueueChanged));
+        }
+    }
+
+    /** @param listener null means the one registered by the speakable id */
+    private void fireSpeakableEvent(SpeakableEvent event, SpeakableListener listener) {
+        execute(() -> {
+            SpeakableListener l = listener;
+            if (l == null) {
+                speakLock.lock();
+                try {
+                    l = event.getId() == SpeakableEvent.SPEAKABLE_ENDED || event.getId() == SpeakableEvent.SPEAKABLE_CANCELLED
+                            ? speakableListenersById.remove(event.getRequestId())
+                            : speakableListenersById.get(event.getRequestId());
+                } finally {
+                    speakLock.unlock();
+                }
+            }
+            if (l != null) {
+                l.speakableUpdate(event);
+            }
+            speakableListeners.forEach(sl -> sl.speakableUpdate(event));
+        });
+    }
+
+    /** */
+    private void fireSynthesizerEvent(SynthesizerEvent event) {
+        execute(() -> synthesizerListeners.forEach(l -> l.synthesizerUpdate(event)));
+    }
+
+    /** runs listeners on the speech event executor */
+    private void execute(Runnable runnable) {
+        try {
+            speechEventExecutor.execute(runnable);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+logger.log(Level.WARNING, e.getMessage(), e);
+        }
+    }
 
-    private final List<SynthesizerListener> synthesizerListeners = new ArrayList<>();
+    /** a speak rpc */
+    @FunctionalInterface
+    private interface Speak {
+        int speak() throws SpeakableException;
+    }
+
+    /** speaks on the server, the listener is registered by the returned id */
+    private int speakRemotely(Speak speak, SpeakableListener listener) throws SpeakableException {
+        if (listener == null) {
+            return speak.speak();
+        }
+        speakLock.lock();
+        try {
+            int id = speak.speak();
+            speakableListenersById.put(id, listener);
+            return id;
+        } finally {
+            speakLock.unlock();
+        }
+    }
 
     @Override
     public void addSpeakableListener(SpeakableListener listener) {
@@ -104,21 +316,25 @@ public final class RpcSynthesizer implements Synthesizer {
 
     @Override
     public void allocate() throws AudioException, EngineException, EngineStateException, SecurityException {
-        rpcClient.allocate(0);
+        rpcClient.open(mode.getModeName());
+        subscribe();
     }
 
     @Override
     public void allocate(int mode) throws IllegalArgumentException, AudioException, EngineException, EngineStateException, SecurityException {
-        rpcClient.allocate(mode);
+        rpcClient.open(this.mode.getModeName());
+        subscribe();
     }
 
     @Override
     public void deallocate() throws AudioException, EngineException, EngineStateException {
+        unsubscribe();
         rpcClient.deallocate();
     }
 
     @Override
     public void deallocate(int mode) throws IllegalArgumentException, AudioException, EngineException, EngineStateException {
+        unsubscribe();
         rpcClient.deallocate(mode);
     }
 
@@ -139,11 +355,17 @@ public final class RpcSynthesizer implements Synthesizer {
 
     @Override
     public long waitEngineState(long state) throws InterruptedException, IllegalArgumentException, IllegalStateException {
-        return rpcClient.waitEngineState(state, 0);
+        if ((state & QUEUE_EMPTY) != 0) {
+            waitLocally();
+        }
+        return rpcClient.waitEngineState(state, -1);
     }
 
     @Override
     public long waitEngineState(long state, long timeout) throws InterruptedException, IllegalArgumentException, IllegalStateException {
+        if ((state & QUEUE_EMPTY) != 0) {
+            waitLocally();
+        }
         return rpcClient.waitEngineState(state, timeout);
     }
 
@@ -179,12 +401,12 @@ public final class RpcSynthesizer implements Synthesizer {
 
     @Override
     public SpeechEventExecutor getSpeechEventExecutor() {
-        return rpcClient.getSpeechEventExecutor();
+        return speechEventExecutor;
     }
 
     @Override
     public void setSpeechEventExecutor(SpeechEventExecutor speechEventExecutor) {
-        rpcClient.setSpeechEventExecutor(speechEventExecutor);
+        this.speechEventExecutor = speechEventExecutor != null ? speechEventExecutor : eventExecutor::execute;
     }
 
     @Override
@@ -199,21 +421,29 @@ public final class RpcSynthesizer implements Synthesizer {
 
     @Override
     public int speak(AudioSegment audio, SpeakableListener listener) throws SpeakableException, EngineStateException, IllegalArgumentException {
-        return rpcClient.speak(audio);
+        return speakRemotely(() -> rpcClient.speak(audio), listener);
     }
 
     @Override
     public int speak(Speakable speakable, SpeakableListener listener) throws SpeakableException, EngineStateException {
-        return rpcClient.speak(speakable);
+        return speakRemotely(() -> rpcClient.speak(speakable), listener);
     }
 
     @Override
     public int speak(String text, SpeakableListener listener) throws EngineStateException {
-        return rpcClient.speak(text);
+        AudioMode audioMode = this.audioMode;
+        if (audioMode != AudioMode.SERVER) {
+            return speakLocally(text, audioMode, listener);
+        }
+        try {
+            return speakRemotely(() -> rpcClient.speak(text), listener);
+        } catch (SpeakableException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     @Override
     public int speakMarkup(String synthesisMarkup, SpeakableListener listener) throws SpeakableException, EngineStateException {
-        return rpcClient.speak(synthesisMarkup);
+        return speakRemotely(() -> rpcClient.speakMarkup(synthesisMarkup), listener);
     }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+
+/**
+ * Transport. how {@link RpcClient} reaches the server.
+ * <p>
+ * a method is an endpoint name under "jsapi2", parameters are the same as
+ * the query parameters of the http endpoint.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Calls a server method.
+     *
+     * @param method endpoint name under "jsapi2"
+     * @param params parameters, null values are omitted
+     * @param type {@link String} for a text body as it is, {@link Void} for no result,
+     *             others are decoded by a {@link Codec}
+     * @return null when no content
+     * @throws jakarta.ws.rs.WebApplicationException when the server returns an error
+     */
+    <T> T call(String method, Map<String, ?> params, Class<T> type);
+
+    /**
+     * Calls a server method asynchronously.
+     * the default implementation blocks a thread of the common pool.
+     *
+     * @see #call(String, Map, Class)
+     */
+    default <T> CompletableFuture<T> callAsync(String method, Map<String, ?> params, Class<T> type) {
+        return CompletableFuture.supplyAsync(() -> call(method, params, type));
+    }
+
+    /**
+     * Calls a server method recording the trace id, the status, the server timing and sizes into the call.
+     * the default implementation records nothing.
+     *
+     * @see #call(String, Map, Class)
+     */
+    default <T> T call(RpcCall call, Map<String, ?> params, Class<T> type) {
+        return call(call.getMethod(), params, type);
+    }
+
+    /**
+     * @see #call(RpcCall, Map, Class)
+     * @see #callAsync(String, Map, Class)
+     */
+    default <T> CompletableFuture<T> callAsync(RpcCall call, Map<String, ?> params, Class<T> type) {
+        return callAsync(call.getMethod(), params, type);
+    }
+
+    /** streamed response body and its headers */
+    record Streamed(InputStream body, Map<String, String> headers) {}
+
+    /**
+     * Calls a server method which returns a large body.
+     *
+     * @param method endpoint name under "jsapi2"
+     * @param params parameters, null values are omitted, "body" is posted
+     * @throws UnsupportedOperationException the transport does not support streaming
+     */
+    default Streamed stream(String method, Map<String, ?> params) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support streaming");
+    }
+
+    /**
+     * @see #call(RpcCall, Map, Class)
+     * @see #stream(String, Map)
+     */
+    default Streamed stream(RpcCall call, Map<String, ?> params) {
+        return stream(call.getMethod(), params);
+    }
+
+    /**
+     * Receives events pushed by the server.
+     *
+     * @param params parameters, the session is required
+     * @param listener receives json of {@link RpcClient.SpeechEventDTO}
+     * @return close to stop receiving
+     */
+    Closeable subscribe(Map<String, ?> params, Consumer<String> listener);
+}
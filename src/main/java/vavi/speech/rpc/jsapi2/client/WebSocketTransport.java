@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.net.URI;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import jakarta.ws.rs.WebApplicationException;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * WebSocketTransport. calls are multiplexed on a persistent websocket by request ids.
+ * <p>
+ * streams are not multiplexed, they are requested over http.
+ * the websocket closed by the server, e.g. by its idle timeout, is connected again
+ * at the next call, subscriptions end with the closed one.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class WebSocketTransport implements Transport, WebSocket.Listener {
+
+    private static final Logger logger = getLogger(WebSocketTransport.class.getName());
+
+    /** */
+    private static final Gson gson = new GsonBuilder().create();
+
+    /** websocket path on the server */
+    public static final String PATH = "ws/jsapi2";
+
+    /** request frame */
+    public static class Request {
+        public int id;
+        public String method;
+        public Map<String, String> params;
+        /** same as {@link RpcCall#HEADER_TRACE_ID}, may be null */
+        public String traceId;
+    }
+
+    /** reply frame */
+    public static class Reply {
+        public int id;
+        /** same as the http response body */
+        public String result;
+        /** null when succeeded */
+        public String error;
+        /** http status equivalent */
+        public int status;
+        /** json of a pushed event, the id is the one of the subscribing request */
+        public String event;
+        /** same as {@link RpcCall#HEADER_SERVER_TIMING} */
+        public String serverTiming;
+    }
+
+    /** replaced when closed, guarded by {@link #sendLock} */
+    private volatile WebSocket webSocket;
+
+    /** */
+    private final URI uri;
+
+    /** by {@link #close()} */
+    private volatile boolean closed;
+
+    /** for streams */
+    private final HttpTransport http;
+
+    /** */
+    private final AtomicInteger ids = new AtomicInteger();
+
+    /** key: request id */
+    private final Map<Integer, CompletableFuture<Reply>> pending = new ConcurrentHashMap<>();
+
+    /** key: request id of the subscription */
+    private final Map<Integer, Consumer<String>> subscribers = new ConcurrentHashMap<>();
+
+    /** a websocket accepts one send at a time */
+    private final ReentrantLock sendLock = new ReentrantLock();
+
+    /** for a fragmented message */
+    private final StringBuilder text = new StringBuilder();
+
+    /** @param url server address e.g. "http://localhost:60090/" */
+    public WebSocketTransport(String url) {
+        http = new HttpTransport(url);
+        uri = URI.create(url.replaceFirst("^http", "ws")).resolve("/" + PATH);
+        webSocket = connect();
+    }
+
+    /** */
+    private WebSocket connect() {
+        try {
+            return RpcClientFactory.getHttpClient().newWebSocketBuilder().buildAsync(uri, this).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("RpcClient is not available at " + uri, e.getCause());
+        }
+    }
+
+    /** @return the websocket, connected again when closed, {@link #sendLock} is held */
+    private WebSocket webSocket() {
+        if (closed) {
+            throw new IllegalStateException("transport closed");
+        }
+        WebSocket ws = webSocket;
+        if (ws.isOutputClosed() || ws.isInputClosed()) {
+            ws.abort();
+logger.log(Level.DEBUG, "reconnect: " + uri);
+            ws = connect();
+            webSocket = ws;
+        }
+        return ws;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        WebSocket ws = webSocket;
+        if (!ws.isOutputClosed()) {
+            ws.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+        }
+        http.close();
+    }
+
+    /** replies are json text frames */
+    @Override
+    public <T> T call(String method, Map<String, ?> params, Class<T> type) {
+        return call(new RpcCall(method), params, type);
+    }
+
+    @Override
+    public <T> T call(RpcCall call, Map<String, ?> params, Class<T> type) {
+        try {
+            return callAsync(call, params, type).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException r) {
+                throw r;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> callAsync(String method, Map<String, ?> params, Class<T> type) {
+        return callAsync(new RpcCall(method), params, type);
+    }
+
+    /** completed by the reply, no thread waits. sizes are of frames */
+    @Override
+    public <T> CompletableFuture<T> callAsync(RpcCall call, Map<String, ?> params, Class<T> type) {
+        Request request = request(call.getMethod(), params);
+        request.traceId = call.getTraceId();
+        return send(request, call).thenApply(reply -> decode(reply.result, type));
+    }
+
+    /** */
+    private static <T> T decode(String result, Class<T> type) {
+        if (type == Void.class || result == null) {
+            return null;
+        } else if (type == String.class) {
+            return type.cast(result);
+        } else {
+            return gson.fromJson(result, type);
+        }
+    }
+
+    /** */
+    private Request request(String method, Map<String, ?> params) {
+        Request request = new Request();
+        request.id = ids.incrementAndGet();
+        request.method = method;
+        request.params = new HashMap<>();
+        params.forEach((k, v) -> {
+            if (v instanceof InputStream is) {
+                // a frame is not streamed
+                try (is) {
+                    request.params.put(k, new String(is.readAllBytes(), StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else if (v instanceof String || v instanceof Number || v instanceof Boolean) {
+                request.params.put(k, String.valueOf(v));
+            } else if (v != null) {
+                request.params.put(k, gson.toJson(v));
+            }
+        });
+        return request;
+    }
+
+    /**
+     * sends a request, the future is completed by the reply
+     *
+     * @param call records the reply, nullable
+     */
+    private CompletableFuture<Reply> send(Request request, RpcCall call) {
+        CompletableFuture<Reply> future = new CompletableFuture<>();
+        pending.put(request.id, future);
+        String frame = gson.toJson(request);
+        if (call != null) {
+            call.addRequestBytes(frame.getBytes(StandardCharsets.UTF_8).length);
+            future.whenComplete((reply, t) -> {
+                if (reply != null) {
+                    call.setStatus(reply.status);
+                    call.setServerTiming(reply.serverTiming);
+                    if (reply.result != null) {
+                        call.addResponseBytes(reply.result.getBytes(StandardCharsets.UTF_8).length);
+                    }
+                } else if (t instanceof WebApplicationException e) {
+                    call.setStatus(e.getResponse().getStatus());
+                }
+            });
+        }
+        sendLock.lock();
+        try {
+            webSocket().sendText(frame, true).join();
+        } catch (CompletionException e) {
+            pending.remove(request.id);
+            future.completeExceptionally(e.getCause());
+        } catch (IllegalStateException e) {
+            pending.remove(request.id);
+            future.completeExceptionally(e);
+        } finally {
+            sendLock.unlock();
+        }
+        return future;
+    }
+
+    /** events are pushed on the websocket with the id of the subscribing request */
+    @Override
+    public Closeable subscribe(Map<String, ?> params, Consumer<String> listener) {
+        Request request = request("events", params);
+        subscribers.put(request.id, listener);
+        try {
+            send(request, null).join();
+        } catch (CompletionException e) {
+            subscribers.remove(request.id);
+            throw e.getCause() instanceof RuntimeException r ? r : e;
+        }
+        return () -> {
+            if (subscribers.remove(request.id) != null) {
+                call("unsubscribe", Map.of("subscription", request.id), Void.class);
+            }
+        };
+    }
+
+    @Override
+    public Streamed stream(String method, Map<String, ?> params) {
+        return http.stream(method, params);
+    }
+
+    @Override
+    public Streamed stream(RpcCall call, Map<String, ?> params) {
+        return http.stream(call, params);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        text.append(data);
+        if (last) {
+            onMessage(text.toString());
+            text.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    /** */
+    private void onMessage(String message) {
+        Reply reply = gson.fromJson(message, Reply.class);
+        if (reply.event != null) {
+            Consumer<String> subscriber = subscribers.get(reply.id);
+            if (subscriber != null) {
+                subscriber.accept(reply.event);
+            }
+            return;
+        }
+        CompletableFuture<Reply> future = pending.remove(reply.id);
+        if (future == null) {
+logger.log(Level.WARNING, "unknown reply: " + reply.id);
+            return;
+        }
+        if (reply.error == null) {
+            future.complete(reply);
+        } else {
+            future.completeExceptionally(new WebApplicationException(reply.error, reply.status));
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+logger.log(Level.DEBUG, "closed: " + statusCode + ", " + reason);
+        if (webSocket == this.webSocket) {
+            failAll(new IllegalStateException("websocket closed: " + statusCode + " " + reason));
+        }
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+logger.log(Level.WARNING, error.getMessage(), error);
+        if (webSocket == this.webSocket) {
+            failAll(error);
+        }
+    }
+
+    /** */
+    private void failAll(Throwable t) {
+        pending.values().forEach(f -> f.completeExceptionally(t));
+        pending.clear();
+        subscribers.clear();
+    }
+}
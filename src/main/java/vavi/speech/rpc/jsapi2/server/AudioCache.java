@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.speech.SpeechLocale;
+import javax.speech.synthesis.SynthesizerProperties;
+import javax.speech.synthesis.Voice;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * AudioCache. synthesized audio addressed by what determines it.
+ * <p>
+ * the key is a digest of the mode, the audio format, the voice, volume, rate, pitch and
+ * the normalized text. the memory tier is an lru bounded by bytes, the disk tier is optional,
+ * it is a {@link SegmentStore} which keeps every entry over restarts.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.server.cache.maxBytes ... bytes of the memory tier, 0 disables the cache, default 67108864</li>
+ *  <li>vavi.speech.rpc.server.cache.dir ... directory of the disk tier, no disk tier if not specified</li>
+ *  <li>vavi.speech.rpc.server.cache.segmentBytes ... bytes of a segment file up to 2147483647, default 268435456</li>
+ *  <li>vavi.speech.rpc.server.cache.maxSegments ... segment files kept, default 16</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class AudioCache implements Closeable {
+
+    private static final Logger logger = getLogger(AudioCache.class.getName());
+
+    /** */
+    private static long maxBytes = 64 * 1024 * 1024;
+
+    /** */
+    private static String dir;
+
+    /** */
+    private static long segmentBytes = 256 * 1024 * 1024;
+
+    /** */
+    private static int maxSegments = 16;
+
+    /* */
+    static {
+        maxBytes = Long.parseLong(System.getProperty("vavi.speech.rpc.server.cache.maxBytes", String.valueOf(maxBytes)));
+        dir = System.getProperty("vavi.speech.rpc.server.cache.dir");
+        segmentBytes = Long.parseLong(System.getProperty("vavi.speech.rpc.server.cache.segmentBytes", String.valueOf(segmentBytes)));
+        maxSegments = Integer.parseInt(System.getProperty("vavi.speech.rpc.server.cache.maxSegments", String.valueOf(maxSegments)));
+    }
+
+    /** bytes of the memory tier */
+    private final long capacity;
+
+    /** lru, guarded by {@link #lock} */
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** guarded by {@link #lock} */
+    private long bytes;
+
+    /** */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** null when no disk tier */
+    private final SegmentStore store;
+
+    /** */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** configured by the system properties */
+    public AudioCache() {
+        this(maxBytes, maxBytes > 0 ? openStore() : null);
+    }
+
+    /**
+     * @param capacity bytes of the memory tier, 0 disables the cache
+     * @param store the disk tier, nullable
+     */
+    AudioCache(long capacity, SegmentStore store) {
+        this.capacity = capacity;
+        this.store = store;
+    }
+
+    /** @return null when no disk tier */
+    private static SegmentStore openStore() {
+        if (dir == null) {
+            return null;
+        }
+        try {
+            return new SegmentStore(Paths.get(dir), segmentBytes, maxSegments);
+        } catch (IOException | IllegalArgumentException e) {
+logger.log(Level.WARNING, "no disk tier: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** @return false when disabled by maxBytes 0 */
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /** the largest audio to be cached */
+    public long getMaxBytes() {
+        return capacity;
+    }
+
+    /** @return text which sounds the same is the same */
+    static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).strip().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * @param audioLocator the format of the audio
+     * @return hex digest
+     */
+    public static String key(String modeName, String audioLocator, SynthesizerProperties sp, String text) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(modeName).append('\0').append(audioLocator).append('\0');
+        Voice voice = sp.getVoice();
+        if (voice != null) {
+            SpeechLocale locale = voice.getSpeechLocale();
+            sb.append(locale != null ? locale.toString() : "").append('\0')
+                    .append(voice.getName()).append('\0')
+                    .append(voice.getGender()).append('\0')
+                    .append(voice.getAge()).append('\0')
+                    .append(voice.getVariant()).append('\0');
+        }
+        sb.append(sp.getVolume()).append('\0')
+                .append(sp.getSpeakingRate()).append('\0')
+                .append(sp.getPitch()).append('\0')
+                .append(normalize(text));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** @return null when missed */
+    public byte[] get(String key) {
+        byte[] audio = getMemory(key);
+        if (audio == null && store != null) {
+            try {
+                audio = store.get(key);
+                if (audio != null) {
+                    putMemory(key, audio);
+                }
+            } catch (IOException e) {
+logger.log(Level.WARNING, e.getMessage());
+            }
+        }
+        (audio != null ? hits : misses).incrementAndGet();
+        return audio;
+    }
+
+    /**
+     * Writes the cached audio, audio on disk is copied by the kernel without the heap.
+     *
+     * @return false when missed, nothing is written
+     */
+    public boolean writeTo(String key, OutputStream out) throws IOException {
+        byte[] audio = getMemory(key);
+        if (audio != null) {
+            hits.incrementAndGet();
+            out.write(audio);
+            out.flush();
+            return true;
+        }
+        if (store != null && store.transferTo(key, Channels.newChannel(out))) {
+            hits.incrementAndGet();
+            out.flush();
+            return true;
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    /** */
+    private byte[] getMemory(String key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** */
+    public void put(String key, byte[] audio) {
+        if (!isEnabled() || audio.length > capacity) {
+            return;
+        }
+        putMemory(key, audio);
+        if (store != null) {
+            try {
+                store.put(key, audio);
+            } catch (IOException e) {
+logger.log(Level.WARNING, e.getMessage());
+            }
+        }
+    }
+
+    /** */
+    private void putMemory(String key, byte[] audio) {
+        lock.lock();
+        try {
+            byte[] old = entries.put(key, audio);
+            bytes += audio.length - (old != null ? old.length : 0);
+            Iterator<Map.Entry<String, byte[]>> i = entries.entrySet().iterator();
+            while (bytes > capacity && i.hasNext()) {
+                bytes -= i.next().getValue().length;
+                i.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** bytes in memory */
+    public long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            entries.clear();
+            bytes = 0;
+        } finally {
+            lock.unlock();
+        }
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+logger.log(Level.WARNING, e.getMessage());
+            }
+        }
+    }
+}
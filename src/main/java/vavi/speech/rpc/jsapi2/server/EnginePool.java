@@ -0,0 +1,584 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.speech.synthesis.SpeakableEvent;
+import javax.speech.synthesis.Synthesizer;
+import javax.speech.synthesis.SynthesizerProperties;
+
+import vavi.speech.rpc.jsapi2.server.Scheduler.PriorityClass;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * EnginePool. engines of a mode synthesizing audio in parallel.
+ * <p>
+ * a pool per mode holds engines writing into streams instead of a device,
+ * each engine has its own worker thread. utterances wait in a queue shared by
+ * the workers, utterances of the same client are synthesized one by one in the
+ * order they are submitted, those of different clients run in parallel.
+ * clients take turns, a client with many utterances does not block others.
+ * <p>
+ * utterances are started in the order of {@link Scheduler.PriorityClass}, those whose
+ * deadline has passed are dropped, a higher class preempts a lower one when all
+ * engines are busy, see {@link Scheduler}.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.server.poolSize ... engines per mode, default the number of processors</li>
+ *  <li>vavi.speech.rpc.server.poolSize.<i>modeName</i> ... engines of the mode, default poolSize</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class EnginePool implements Closeable {
+
+    private static final Logger logger = getLogger(EnginePool.class.getName());
+
+    /** engines per mode */
+    private static int poolSize = Runtime.getRuntime().availableProcessors();
+
+    /* */
+    static {
+        poolSize = Integer.parseInt(System.getProperty("vavi.speech.rpc.server.poolSize", String.valueOf(poolSize)));
+    }
+
+    /** @return engines of the mode */
+    static int poolSize(String modeName) {
+        int size = Integer.parseInt(System.getProperty("vavi.speech.rpc.server.poolSize." + modeName, String.valueOf(poolSize)));
+        return Math.max(1, size);
+    }
+
+    /**
+     * result of a synthesis.
+     *
+     * @param completed false when cancelled
+     * @param audio whole audio if captured, null when over the capture limit
+     * @param start nano time the engine started
+     * @param firstWrite nano time of the first audio, 0 when none
+     * @param written bytes of audio
+     */
+    public record Rendered(boolean completed, byte[] audio, long start, long firstWrite, long written) {}
+
+    /** an utterance */
+    private static final class Job {
+        final String text;
+        final SynthesizerProperties properties;
+        final OutputStream out;
+        final int captureLimit;
+        final PriorityClass priorityClass;
+        /** nano time, {@link Long#MAX_VALUE} when none */
+        final long deadline;
+        final long enqueued = System.nanoTime();
+        final CompletableFuture<Rendered> result = new CompletableFuture<>();
+        /** the engine stops this for a higher class */
+        volatile boolean preempted;
+        Job(String text, SynthesizerProperties properties, OutputStream out, int captureLimit, long deadline) {
+            this.text = text;
+            this.properties = properties;
+            this.out = out;
+            this.captureLimit = captureLimit;
+            this.priorityClass = PriorityClass.of(properties);
+            this.deadline = deadline;
+        }
+    }
+
+    /** utterances of a client in a class, only one of them is synthesized at a time */
+    private static final class Lane {
+        final String key;
+        final PriorityClass priorityClass;
+        final Deque<Job> jobs = new ArrayDeque<>();
+        /** a job is being synthesized */
+        boolean running;
+        Lane(String key, PriorityClass priorityClass) {
+            this.key = key;
+            this.priorityClass = priorityClass;
+        }
+    }
+
+    /** engines of a mode */
+    private static final class Pool {
+        final String modeName;
+        final int size;
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition ready = lock.newCondition();
+        /** lanes having a job and not running per class, guarded by lock */
+        final Map<PriorityClass, Deque<Lane>> readyLanes = new EnumMap<>(PriorityClass.class);
+        /** key: client and class, guarded by lock */
+        final Map<String, Lane> lanes = new HashMap<>();
+        /** jobs being synthesized, guarded by lock */
+        final List<Job> running = new ArrayList<>();
+        /** guarded by lock */
+        final List<Thread> workers = new ArrayList<>();
+        /** guarded by lock */
+        int idle;
+        /** guarded by lock */
+        int queued;
+        /** guarded by lock */
+        int busy;
+        /** guarded by lock */
+        boolean closed;
+
+        Pool(String modeName) {
+            this.modeName = modeName;
+            this.size = poolSize(modeName);
+            for (PriorityClass c : PriorityClass.values()) {
+                readyLanes.put(c, new ArrayDeque<>());
+            }
+            Metrics.gauge("jsapi2_engine_pool_size", () -> size, "mode", modeName);
+            Metrics.gauge("jsapi2_engine_pool_busy", this::getBusy, "mode", modeName);
+            Metrics.gauge("jsapi2_engine_pool_queued", this::getQueued, "mode", modeName);
+logger.log(Level.DEBUG, "pool: " + modeName + ", size: " + size);
+        }
+
+        void submit(String client, Job job) {
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IllegalStateException("pool is closed: " + modeName);
+                }
+                Lane lane = lanes.computeIfAbsent(client + "|" + job.priorityClass, k -> new Lane(k, job.priorityClass));
+                lane.jobs.addLast(job);
+                queued++;
+                if (!lane.running && lane.jobs.size() == 1) {
+                    readyLanes.get(lane.priorityClass).addLast(lane);
+                    if (idle > 0) {
+                        ready.signal();
+                    }
+                    // an idle worker takes a ready lane, more ready lanes than idle workers need more engines
+                    if (countReady() > idle) {
+                        if (workers.size() < size) {
+                            Thread worker = new Thread(this::work, "jsapi2-engine-pool-" + workers.size());
+                            worker.setDaemon(true);
+                            workers.add(worker);
+                            worker.start();
+                        } else {
+                            preempt(job.priorityClass);
+                        }
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** stops a running job of the lowest class under the class, the lock is held */
+        private void preempt(PriorityClass c) {
+            if (!Scheduler.isPreemptive()) {
+                return;
+            }
+            Job victim = null;
+            for (Job job : running) {
+                if (!job.preempted && c.precedes(job.priorityClass) &&
+                        (victim == null || victim.priorityClass.precedes(job.priorityClass))) {
+                    victim = job;
+                }
+            }
+            if (victim != null) {
+logger.log(Level.DEBUG, "preempt: " + victim.priorityClass + " by " + c);
+                Scheduler.countPreempted(victim.priorityClass);
+                victim.preempted = true;
+            }
+        }
+
+        /** @return lanes waiting for a worker, the lock is held */
+        private int countReady() {
+            int count = 0;
+            for (Deque<Lane> deque : readyLanes.values()) {
+                count += deque.size();
+            }
+            return count;
+        }
+
+        /** @return a ready lane of the highest class, null when none */
+        private Lane pollReady() {
+            for (Deque<Lane> deque : readyLanes.values()) {
+                Lane lane = deque.pollFirst();
+                if (lane != null) {
+                    return lane;
+                }
+            }
+            return null;
+        }
+
+        /** @return null when closed */
+        private Lane take() throws InterruptedException {
+            lock.lock();
+            try {
+                Lane lane;
+                idle++;
+                try {
+                    while ((lane = pollReady()) == null && !closed) {
+                        ready.await();
+                    }
+                } finally {
+                    idle--;
+                }
+                if (closed) {
+                    return null;
+                }
+                lane.running = true;
+                busy++;
+                return lane;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** the lane takes its turn again at the tail when it has more */
+        private void done(Lane lane) {
+            lock.lock();
+            try {
+                lane.running = false;
+                busy--;
+                if (lane.jobs.isEmpty()) {
+                    lanes.remove(lane.key);
+                } else {
+                    readyLanes.get(lane.priorityClass).addLast(lane);
+                    ready.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** @return the next job of the lane, null when none */
+        private Job poll(Lane lane) {
+            lock.lock();
+            try {
+                Job job = lane.jobs.pollFirst();
+                if (job != null) {
+                    queued--;
+                    running.add(job);
+                }
+                return job;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** a worker thread owns an engine */
+        private void work() {
+            TapOutputStream tap = new TapOutputStream();
+            Synthesizer synthesizer = null;
+            try {
+                Lane lane;
+                while ((lane = take()) != null) {
+                    try {
+                        Job job = poll(lane);
+                        if (job != null) {
+                            try {
+                                if (synthesizer == null) {
+                                    synthesizer = EngineRegistry.newSynthesizer(modeName, Session.getAudioLocator(), tap);
+                                }
+                                run(synthesizer, tap, lane, job);
+                            } catch (StuckException e) {
+                                if (job.preempted && !job.result.isDone() &&
+                                        (job.out instanceof ByteArrayOutputStream || tap.getWritten() == 0)) {
+                                    if (job.out instanceof ByteArrayOutputStream baos) {
+                                        baos.reset();
+                                    }
+                                    requeue(lane, job);
+                                } else {
+                                    job.result.completeExceptionally(e);
+                                }
+                                retire(synthesizer);
+                                synthesizer = null;
+                                // the retired engine keeps its tap, writes after this are dropped
+                                tap = new TapOutputStream();
+                            } catch (Exception e) {
+                                job.result.completeExceptionally(e);
+                            } finally {
+                                finish(job);
+                            }
+                        }
+                    } finally {
+                        done(lane);
+                    }
+                }
+            } catch (InterruptedException e) {
+logger.log(Level.DEBUG, "interrupted: " + Thread.currentThread().getName());
+            } finally {
+                if (synthesizer != null) {
+                    try {
+                        synthesizer.deallocate();
+                    } catch (Exception e) {
+logger.log(Level.WARNING, e.getMessage(), e);
+                    }
+                }
+            }
+        }
+
+        /** deallocates an engine which did not stop, apart from the worker */
+        private void retire(Synthesizer synthesizer) {
+logger.log(Level.WARNING, "engine retired, not stopped in " + CANCEL_TIMEOUT + " ms: " + modeName);
+            Thread thread = new Thread(() -> {
+                try {
+                    synthesizer.cancelAll();
+                    synthesizer.deallocate();
+                } catch (Exception e) {
+logger.log(Level.WARNING, e.getMessage(), e);
+                }
+            }, "jsapi2-engine-pool-retire");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /** synthesizes the job unless it is cancelled or stale */
+        private void run(Synthesizer synthesizer, TapOutputStream tap, Lane lane, Job job) throws Exception {
+            if (job.result.isDone()) {
+                return;
+            }
+            if (Scheduler.isStale(job.deadline)) {
+logger.log(Level.DEBUG, "stale: " + job.priorityClass + ", " + job.text);
+                Scheduler.countStale(job.priorityClass);
+                job.result.completeExceptionally(new IOException("deadline exceeded"));
+                return;
+            }
+            Scheduler.observeWait(job.priorityClass, System.nanoTime() - job.enqueued);
+            Rendered rendered = render(synthesizer, tap, job);
+            if (!rendered.completed() && job.preempted && !job.result.isDone()) {
+                // nothing is sent yet, synthesized again from the start
+                if (job.out instanceof ByteArrayOutputStream baos) {
+                    baos.reset();
+                    requeue(lane, job);
+                    return;
+                } else if (rendered.written() == 0) {
+                    requeue(lane, job);
+                    return;
+                }
+                job.result.completeExceptionally(new CancellationException("preempted"));
+                return;
+            }
+            job.result.complete(rendered);
+        }
+
+        /** the job goes back to the head of the lane */
+        private void requeue(Lane lane, Job job) {
+            lock.lock();
+            try {
+                job.preempted = false;
+                lane.jobs.addFirst(job);
+                queued++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** */
+        private void finish(Job job) {
+            lock.lock();
+            try {
+                running.remove(job);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int getBusy() {
+            lock.lock();
+            try {
+                return busy;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int getQueued() {
+            lock.lock();
+            try {
+                return queued;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                for (Lane lane : lanes.values()) {
+                    lane.jobs.forEach(job -> job.result.cancel(false));
+                    lane.jobs.clear();
+                }
+                queued = 0;
+                ready.signalAll();
+                workers.forEach(Thread::interrupt);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** millis an engine is given to report a cancelled utterance */
+    private static final long CANCEL_TIMEOUT = 1000;
+
+    /** the engine did not report the end of a cancelled utterance, it may still write */
+    private static final class StuckException extends IOException {
+        StuckException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Synthesizes a job by the engine writing into the tap.
+     *
+     * @throws StuckException the engine is not given the next job
+     */
+    private static Rendered render(Synthesizer synthesizer, TapOutputStream tap, Job job) throws Exception {
+        copyProperties(job.properties, synthesizer.getSynthesizerProperties());
+        tap.connect(job.out, job.captureLimit);
+        try {
+            CountDownLatch ended = new CountDownLatch(1);
+            boolean[] completed = new boolean[1];
+            long start = System.nanoTime();
+            int id = synthesizer.speak(job.text, e -> {
+                if (e.getId() == SpeakableEvent.SPEAKABLE_ENDED || e.getId() == SpeakableEvent.SPEAKABLE_CANCELLED) {
+                    completed[0] = e.getId() == SpeakableEvent.SPEAKABLE_ENDED;
+                    ended.countDown();
+                }
+            });
+            while (!ended.await(100, TimeUnit.MILLISECONDS)) {
+                if (tap.getFailure() != null || job.result.isDone() || job.preempted) {
+logger.log(Level.DEBUG, "client has gone: " + tap.getFailure());
+                    synthesizer.cancel(id);
+                    if (!ended.await(CANCEL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                        throw new StuckException("not cancelled: " + id);
+                    }
+                    break;
+                }
+            }
+            if (tap.getFailure() != null) {
+                throw tap.getFailure();
+            }
+            return new Rendered(completed[0], tap.getCaptured(), start, tap.getFirstWrite(), tap.getWritten());
+        } finally {
+            tap.disconnect();
+        }
+    }
+
+    /** a pooled engine follows properties of the client's engine */
+    private static void copyProperties(SynthesizerProperties src, SynthesizerProperties dst) {
+        try {
+            if (src.getVoice() != null && !src.getVoice().equals(dst.getVoice())) {
+                dst.setVoice(src.getVoice());
+            }
+            if (src.getVolume() != dst.getVolume()) {
+                dst.setVolume(src.getVolume());
+            }
+            if (src.getSpeakingRate() != dst.getSpeakingRate()) {
+                dst.setSpeakingRate(src.getSpeakingRate());
+            }
+            if (src.getPitch() != dst.getPitch()) {
+                dst.setPitch(src.getPitch());
+            }
+        } catch (IllegalArgumentException e) {
+logger.log(Level.WARNING, e.getMessage());
+        }
+    }
+
+    /** key: mode name */
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    /** */
+    private Pool pool(String modeName) {
+        return pools.computeIfAbsent(modeName, Pool::new);
+    }
+
+    /**
+     * Synthesizes the text by an engine of the pool and writes the audio into the stream
+     * as the engine produces it. blocks until the utterance ends.
+     *
+     * @param modeName class name of {@link javax.speech.synthesis.SynthesizerMode}
+     * @param client utterances of the same client are synthesized in order
+     * @param properties voice and prosody the engine follows, the priority decides the class
+     * @param deadline nano time by {@link Scheduler#deadline(long)}, dropped when not started until then
+     * @param captureLimit max bytes of {@link Rendered#audio()} kept, 0 keeps nothing
+     */
+    public Rendered render(String modeName, String client, SynthesizerProperties properties, String text,
+                           long deadline, OutputStream out, int captureLimit) throws IOException {
+        CompletableFuture<Rendered> result = submit(modeName, client, properties, text, deadline, out, captureLimit);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("cancelled: " + e.getMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Queues the text without blocking.
+     * cancelling the result drops the utterance or stops the engine synthesizing it.
+     *
+     * @see #render(String, String, SynthesizerProperties, String, long, OutputStream, int)
+     */
+    public CompletableFuture<Rendered> submit(String modeName, String client, SynthesizerProperties properties, String text,
+                                              long deadline, OutputStream out, int captureLimit) {
+        Job job = new Job(text, properties, out, captureLimit, deadline);
+        pool(modeName).submit(client, job);
+        return job.result;
+    }
+
+    /** @return engines of the mode */
+    public int getSize(String modeName) {
+        return poolSize(modeName);
+    }
+
+    /**
+     * @return size, busy engines and queued utterances per mode, key: mode name
+     */
+    public Map<String, Map<String, Integer>> getStats() {
+        Map<String, Map<String, Integer>> stats = new LinkedHashMap<>();
+        pools.forEach((modeName, pool) -> {
+            Map<String, Integer> s = new LinkedHashMap<>();
+            s.put("size", pool.size);
+            s.put("busy", pool.getBusy());
+            s.put("queued", pool.getQueued());
+            stats.put(modeName, s);
+        });
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        pools.values().forEach(Pool::close);
+        pools.clear();
+    }
+}
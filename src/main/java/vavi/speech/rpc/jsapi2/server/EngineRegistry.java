@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import javax.speech.Engine;
+import javax.speech.EngineManager;
+import javax.speech.synthesis.Synthesizer;
+import javax.speech.synthesis.SynthesizerMode;
+import javax.speech.synthesis.Voice;
+
+import vavi.speech.rpc.jsapi2.client.RpcClient.VoiceDTO;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * EngineRegistry.
+ * <p>
+ * keeps allocated synthesizers warm keyed by mode name, so that an engine
+ * is allocated only once and voice lists are served from a snapshot.
+ * an engine is used through a {@link Lease}, it is not evicted while leased or speaking.
+ * voice lists of modes in the {@link VoiceCatalog} are served without allocating an engine.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.server.maxEngines ... max number of warm engines, default 4</li>
+ *  <li>vavi.speech.rpc.server.idleTimeout ... idle seconds before a warm engine is deallocated, default 600</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class EngineRegistry implements Closeable {
+
+    private static final Logger logger = getLogger(EngineRegistry.class.getName());
+
+    /** max number of warm engines */
+    private static int maxEngines = 4;
+
+    /** idle timeout in seconds */
+    private static long idleTimeout = 600;
+
+    /* */
+    static {
+        maxEngines = Integer.parseInt(System.getProperty("vavi.speech.rpc.server.maxEngines", String.valueOf(maxEngines)));
+        idleTimeout = Long.parseLong(System.getProperty("vavi.speech.rpc.server.idleTimeout", String.valueOf(idleTimeout)));
+    }
+
+    /** a warm engine */
+    private static class Entry {
+        final String modeName;
+        /** told an engine deallocated */
+        final Consumer<Synthesizer> deallocated;
+        /** allocation blocks long, a monitor would pin a virtual thread */
+        final ReentrantLock lock = new ReentrantLock();
+        /** guarded by lock */
+        Synthesizer synthesizer;
+        /** guarded by lock */
+        boolean evicted;
+        /** leases not closed, incremented under lock */
+        final AtomicInteger users = new AtomicInteger();
+        volatile long lastAccess = System.currentTimeMillis();
+        Entry(String modeName, Consumer<Synthesizer> deallocated) {
+            this.modeName = modeName;
+            this.deallocated = deallocated;
+        }
+        /** allocates lazily, only the first caller pays the cost, null when evicted */
+        Synthesizer acquire() {
+            lock.lock();
+            try {
+                if (evicted) {
+                    return null;
+                }
+                if (synthesizer == null) {
+                    synthesizer = newSynthesizer(modeName);
+                }
+                users.incrementAndGet();
+                lastAccess = System.currentTimeMillis();
+                return synthesizer;
+            } finally {
+                lock.unlock();
+            }
+        }
+        /** */
+        void release() {
+            lastAccess = System.currentTimeMillis();
+            users.decrementAndGet();
+        }
+        /**
+         * deallocates unless leased or queued speakables exist
+         * @return true when evicted
+         */
+        boolean evictIfUnused() {
+            lock.lock();
+            try {
+                if (evicted) {
+                    return false;
+                }
+                if (users.get() > 0 || (synthesizer != null && synthesizer.testEngineState(Synthesizer.QUEUE_NOT_EMPTY))) {
+                    return false;
+                }
+                deallocate();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+        /** regardless of users */
+        void deallocate() {
+            lock.lock();
+            try {
+                evicted = true;
+                if (synthesizer != null) {
+                    try {
+                        synthesizer.deallocate();
+logger.log(Level.DEBUG, "deallocated: " + modeName);
+                    } catch (Exception e) {
+logger.log(Level.WARNING, e.getMessage(), e);
+                    }
+                    deallocated.accept(synthesizer);
+                    synthesizer = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** key: mode name */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /** voice list snapshots, survive eviction. key: mode name */
+    private final Map<String, VoiceDTO[]> voices = new ConcurrentHashMap<>();
+
+    /** mode name for clients without a session, the mode lastly requested by getVoices */
+    private volatile String defaultModeName;
+
+    /** */
+    private final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "jsapi2-engine-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** phonemes of sentences per engine */
+    private final PhonemeCache phonemes = new PhonemeCache();
+
+    /** voices of all configured engines, built at startup */
+    private final VoiceCatalog catalog = new VoiceCatalog();
+
+    /** */
+    public EngineRegistry() {
+        long period = Math.max(1, idleTimeout / 4);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates an allocated and resumed synthesizer.
+     *
+     * @param modeName class name of {@link SynthesizerMode}
+     * @throws IllegalStateException when the engine cannot be created
+     */
+    public static Synthesizer newSynthesizer(String modeName) {
+        return newSynthesizer(modeName, null, null);
+    }
+
+    /**
+     * Creates an allocated and resumed synthesizer which writes audio into the stream.
+     *
+     * @param modeName class name of {@link SynthesizerMode}
+     * @param mediaLocator audio format of the output, null means the engine's default device
+     * @param out audio destination, used only when mediaLocator is specified
+     * @throws IllegalStateException when the engine cannot be created
+     */
+    public static Synthesizer newSynthesizer(String modeName, String mediaLocator, OutputStream out) {
+logger.log(Level.DEBUG, "modeName: " + modeName);
+        try {
+            @SuppressWarnings("unchecked")
+            Class<SynthesizerMode> clazz = (Class<SynthesizerMode>) Class.forName(modeName);
+logger.log(Level.DEBUG, "clazz: " + clazz.getName());
+            Synthesizer synthesizer = (Synthesizer) EngineManager.createEngine(clazz.getDeclaredConstructor().newInstance());
+logger.log(Level.DEBUG, "synthesizer: " + synthesizer.getClass().getName());
+            synthesizer.addSynthesizerListener(System.err::println);
+            if (mediaLocator != null) {
+                // must be set while deallocated
+                synthesizer.getAudioManager().setMediaLocator(mediaLocator, out);
+            }
+            long start = System.nanoTime();
+            synthesizer.allocate();
+            synthesizer.waitEngineState(Engine.ALLOCATED);
+            long allocated = System.nanoTime();
+            Metrics.histogram("jsapi2_engine_allocate_seconds", "mode", modeName).observeNanos(allocated - start);
+            synthesizer.resume();
+            synthesizer.waitEngineState(Synthesizer.RESUMED);
+            Metrics.histogram("jsapi2_engine_resume_seconds", "mode", modeName).observeNanos(System.nanoTime() - allocated);
+            return synthesizer;
+        } catch (Exception e) {
+logger.log(Level.ERROR, e.getMessage(), e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** a use of a warm engine, the engine is not evicted until this is closed */
+    public static final class Lease implements Closeable {
+        private final Entry entry;
+        private final Synthesizer synthesizer;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private Lease(Entry entry, Synthesizer synthesizer) {
+            this.entry = entry;
+            this.synthesizer = synthesizer;
+        }
+        /** */
+        public Synthesizer getSynthesizer() {
+            return synthesizer;
+        }
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                entry.release();
+            }
+        }
+    }
+
+    /**
+     * @return a lease of a warm synthesizer for the mode, allocated at the first call
+     */
+    public Lease acquire(String modeName) {
+        while (true) {
+            Entry entry = entries.computeIfAbsent(modeName, k -> new Entry(k, this::fireDeallocated));
+            Synthesizer synthesizer = entry.acquire();
+            if (synthesizer != null) {
+                evictOverflow(entry);
+                return new Lease(entry, synthesizer);
+            }
+            // evicted meanwhile
+            entries.remove(modeName, entry);
+        }
+    }
+
+    /** sets the mode used by clients without a session */
+    public void setDefault(String modeName) {
+        this.defaultModeName = modeName;
+    }
+
+    /**
+     * @return a lease of a warm synthesizer for clients without a session
+     * @throws IllegalStateException no mode has been requested yet
+     */
+    public Lease acquireDefault() {
+        String modeName = defaultModeName;
+        if (modeName == null) {
+            throw new IllegalStateException("no mode is specified, call getVoices or open first");
+        }
+        return acquire(modeName);
+    }
+
+    /**
+     * @return voice list snapshot of the mode, an engine is allocated only at the first call
+     */
+    public VoiceDTO[] getVoices(String modeName) {
+        VoiceDTO[] snapshot = voices.get(modeName);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        // allocation blocks long, not in the map's computation
+        snapshot = catalog.getVoices(modeName);
+        if (snapshot == null) {
+            Voice[] vs;
+            try (Lease lease = acquire(modeName)) {
+                vs = ((SynthesizerMode) lease.getSynthesizer().getEngineMode()).getVoices();
+            }
+            catalog.add(modeName, vs);
+            snapshot = Arrays.stream(vs).map(VoiceDTO::new).toArray(VoiceDTO[]::new);
+        }
+        VoiceDTO[] previous = voices.putIfAbsent(modeName, snapshot);
+        return previous != null ? previous : snapshot;
+    }
+
+    /** */
+    public PhonemeCache getPhonemeCache() {
+        return phonemes;
+    }
+
+    /** */
+    private final List<Consumer<Synthesizer>> deallocateListeners = new CopyOnWriteArrayList<>();
+
+    /** the listener is told engines deallocated by eviction or close, e.g. to drop what is kept per engine */
+    public void addDeallocateListener(Consumer<Synthesizer> listener) {
+        deallocateListeners.add(listener);
+    }
+
+    /** */
+    private void fireDeallocated(Synthesizer synthesizer) {
+        deallocateListeners.forEach(listener -> listener.accept(synthesizer));
+    }
+
+    /** */
+    public VoiceCatalog getCatalog() {
+        return catalog;
+    }
+
+    /** deallocates least recently used idle engines over {@link #maxEngines} */
+    private void evictOverflow(Entry keep) {
+        if (entries.size() <= maxEngines) {
+            return;
+        }
+        List<Entry> candidates = new ArrayList<>(entries.values());
+        candidates.sort(Comparator.comparingLong(e -> e.lastAccess));
+        for (Entry entry : candidates) {
+            if (entries.size() <= maxEngines) {
+                break;
+            }
+            if (entry != keep) {
+                evict(entry);
+            }
+        }
+    }
+
+    /** deallocates engines not accessed for {@link #idleTimeout} */
+    private void evictIdle() {
+        long limit = System.currentTimeMillis() - idleTimeout * 1000;
+        for (Entry entry : entries.values()) {
+            if (entry.lastAccess < limit && evict(entry)) {
+logger.log(Level.DEBUG, "idle: " + entry.modeName);
+            }
+        }
+    }
+
+    /** @return true when evicted, an engine leased or speaking is not */
+    private boolean evict(Entry entry) {
+        if (entry.evictIfUnused()) {
+            entries.remove(entry.modeName, entry);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+        entries.values().forEach(Entry::deallocate);
+        entries.clear();
+        phonemes.clear();
+    }
+}
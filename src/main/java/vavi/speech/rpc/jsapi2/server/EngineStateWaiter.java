@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.speech.synthesis.Synthesizer;
+import javax.speech.synthesis.SynthesizerListener;
+
+
+/**
+ * EngineStateWaiter. waits an engine state without holding a thread.
+ * <p>
+ * a waiter is a synthesizer listener which tests the state on every state change,
+ * a timeout is a task on a shared timer.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+final class EngineStateWaiter {
+
+    /** */
+    private EngineStateWaiter() {}
+
+    /** for timeouts */
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "jsapi2-wait-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param state states to wait
+     * @param timeout milliseconds, -1 means forever
+     * @return completed by the engine state when the state is reached or timed out
+     * @throws IllegalArgumentException state is not valid
+     */
+    static CompletableFuture<Long> await(Synthesizer synthesizer, long state, long timeout) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        if (synthesizer.testEngineState(state)) {
+            future.complete(synthesizer.getEngineState());
+            return future;
+        }
+        SynthesizerListener listener = e -> {
+            try {
+                if (synthesizer.testEngineState(state)) {
+                    future.complete(synthesizer.getEngineState());
+                }
+            } catch (RuntimeException t) {
+                future.completeExceptionally(t);
+            }
+        };
+        synthesizer.addSynthesizerListener(listener);
+        // the state might have been reached before the listener is added
+        listener.synthesizerUpdate(null);
+        if (timeout >= 0 && !future.isDone()) {
+            ScheduledFuture<?> timeoutTask = timer.schedule(() -> future.complete(synthesizer.getEngineState()), timeout, TimeUnit.MILLISECONDS);
+            future.whenComplete((s, t) -> timeoutTask.cancel(false));
+        }
+        future.whenComplete((s, t) -> synthesizer.removeSynthesizerListener(listener));
+        return future;
+    }
+}
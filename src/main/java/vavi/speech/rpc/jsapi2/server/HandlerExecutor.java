@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * HandlerExecutor. runs request handlers with bounded concurrency and a bounded queue.
+ * <p>
+ * the delegate is typically a virtual thread per task executor,
+ * the bound keeps thousands of handlers from overrunning engines.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class HandlerExecutor implements Executor {
+
+    private static final Logger logger = getLogger(HandlerExecutor.class.getName());
+
+    /** */
+    private final Executor delegate;
+
+    /** */
+    private final int maxConcurrency;
+
+    /** */
+    private final BlockingQueue<Runnable> queue;
+
+    /** */
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * @param maxConcurrency handlers running at once
+     * @param maxQueue handlers waiting, more are rejected
+     */
+    HandlerExecutor(Executor delegate, int maxConcurrency, int maxQueue) {
+        this.delegate = delegate;
+        this.maxConcurrency = maxConcurrency;
+        this.queue = new ArrayBlockingQueue<>(maxQueue);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!queue.offer(task)) {
+            throw new RejectedExecutionException("handler queue is full: " + queue.size());
+        }
+        drain();
+    }
+
+    /** starts queued tasks while under the bound */
+    private void drain() {
+        while (true) {
+            int n = running.get();
+            if (n >= maxConcurrency || queue.isEmpty()) {
+                return;
+            }
+            if (!running.compareAndSet(n, n + 1)) {
+                continue;
+            }
+            Runnable task = queue.poll();
+            if (task == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        running.decrementAndGet();
+                        drain();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    /** running handlers */
+    int getRunning() {
+        return running.get();
+    }
+
+    /** waiting handlers */
+    int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor by reflection, the build target is older than virtual threads.
+     *
+     * @return null when the running jvm does not support virtual threads
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+logger.log(Level.WARNING, "virtual threads are not supported: " + e);
+            return null;
+        }
+    }
+}
@@ -6,34 +6,67 @@
 
 package vavi.speech.rpc.jsapi2.server;
 
-import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
 import javax.speech.AudioException;
 import javax.speech.AudioManager;
-import javax.speech.Engine;
 import javax.speech.EngineException;
-import javax.speech.EngineManager;
 import javax.speech.EngineStateException;
 import javax.speech.SpeechEventExecutor;
 import javax.speech.VocabularyManager;
+import javax.speech.synthesis.SpeakableEvent;
+import javax.speech.synthesis.SpeakableException;
+import javax.speech.synthesis.SpeakableListener;
 import javax.speech.synthesis.Synthesizer;
-import javax.speech.synthesis.SynthesizerMode;
 import javax.speech.synthesis.SynthesizerProperties;
-import javax.speech.synthesis.Voice;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.FormParam;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.PATCH;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import vavi.speech.rpc.jsapi2.client.Codecs;
+import vavi.speech.rpc.jsapi2.client.RpcAudio;
+import vavi.speech.rpc.jsapi2.client.RpcClient.SpeechEventDTO;
 import vavi.speech.rpc.jsapi2.client.RpcClient.SynthesizerPropertiesDTO;
 import vavi.speech.rpc.jsapi2.client.RpcClient.VoiceDTO;
 
@@ -47,7 +80,7 @@ import static java.lang.System.getLogger;
  * @version 0.00 2024-02-03 nsano initial version <br>
  */
 @Path("jsapi2")
-public class Jsapi2Service implements Closeable {
+public class Jsapi2Service {
 
     private static final Logger logger = getLogger(Jsapi2Service.class.getName());
 
@@ -55,97 +88,311 @@ public class Jsapi2Service implements Closeable {
     private static final Gson gson = new GsonBuilder().create();
 
     @Inject
-    private Synthesizer synthesizer; // this class is stateless, so it's needed to set synthesizer every access
+    private EngineRegistry registry;
 
-    // TODO should not be static but di container
+    @Inject
+    private SessionManager sessions;
+
+    /** speaks to an engine are serialized by these, not to pin virtual threads. key: engine */
+    private static final Map<Synthesizer, ReentrantLock> speakLocks = Collections.synchronizedMap(new WeakHashMap<>());
 
-    /** for DI */
-    private static Synthesizer _synthesizer;
+    /** */
+    private static ReentrantLock speakLock(Synthesizer synthesizer) {
+        return speakLocks.computeIfAbsent(synthesizer, k -> new ReentrantLock());
+    }
+
+    /** speakables enqueued and not ended yet, key: engine mode class name */
+    private static final Map<String, AtomicInteger> queueDepths = new ConcurrentHashMap<>();
+
+    /** */
+    private static AtomicInteger queueDepth(Synthesizer synthesizer) {
+        return queueDepths.computeIfAbsent(synthesizer.getEngineMode().getClass().getName(), k -> {
+            AtomicInteger depth = new AtomicInteger();
+            Metrics.gauge("jsapi2_speak_queue_depth", depth::get, "mode", k);
+            return depth;
+        });
+    }
 
-    /** for DI */
-    public static Synthesizer getSynthesizer() {
-        return _synthesizer;
+    /** a speak counted by the queue depth until it ends */
+    @FunctionalInterface
+    private interface Enqueue {
+        int speak(SpeakableListener listener) throws SpeakableException, EngineStateException;
     }
 
-    /** for DI */
-    public static void createSynthesizer(String modeName) {
-logger.log(Level.DEBUG, "modeName: " + modeName);
+    /**
+     * Counts the speakable in the queue depth until it ends.
+     * the count drifts when a client masks out end events by setSpeakableMask.
+     * the {@link Scheduler} preempts lower classes and drops the speakable after the deadline.
+     */
+    private int enqueue(Synthesizer synthesizer, Enqueue enqueue) throws SpeakableException, EngineStateException {
+        AtomicInteger depth = queueDepth(synthesizer);
+        depth.incrementAndGet();
         try {
-            @SuppressWarnings("unchecked")
-            Class<SynthesizerMode> clazz = (Class<SynthesizerMode>) Class.forName(modeName);
-logger.log(Level.DEBUG, "clazz: " + clazz.getName());
-            _synthesizer = (Synthesizer) EngineManager.createEngine(clazz.getDeclaredConstructor().newInstance());
-logger.log(Level.DEBUG, "synthesizer: " + _synthesizer.getClass().getName());
-            _synthesizer.addSynthesizerListener(System.err::println);
-            _synthesizer.allocate();
-            _synthesizer.waitEngineState(Engine.ALLOCATED);
-            _synthesizer.resume();
-            _synthesizer.waitEngineState(Synthesizer.RESUMED);
-        } catch (Exception e) {
-logger.log(Level.ERROR, e.getMessage(), e);
-            throw new IllegalStateException(e);
+            return sessions.getScheduler().speak(synthesizer, Scheduler.deadline(deadline), l -> enqueue.speak(e -> {
+                l.speakableUpdate(e);
+logger.log(Level.TRACE, e);
+                int id = e.getId();
+                if (id == SpeakableEvent.SPEAKABLE_ENDED || id == SpeakableEvent.SPEAKABLE_CANCELLED || id == SpeakableEvent.SPEAKABLE_FAILED) {
+                    depth.decrementAndGet();
+                }
+            }));
+        } catch (SpeakableException | RuntimeException e) {
+            depth.decrementAndGet();
+            throw e;
         }
     }
 
-    @Override
-    public void close() throws IOException {
-        try {
-            synthesizer.waitEngineState(Synthesizer.QUEUE_EMPTY);
-            synthesizer.deallocate();
-        } catch (AudioException | EngineException | InterruptedException e) {
-            throw new IOException(e);
+    /** session handle, null means the default engine selected by {@link #getVoices(String)} */
+    @QueryParam("session")
+    private String sessionId;
+
+    /** milliseconds an utterance may wait before it starts, 0 is the server's default */
+    @QueryParam("deadline")
+    private long deadline;
+
+    /** for jersey */
+    public Jsapi2Service() {
+    }
+
+    /** for other transports */
+    Jsapi2Service(EngineRegistry registry, SessionManager sessions, String sessionId) {
+        this(registry, sessions, sessionId, 0);
+    }
+
+    /** for other transports */
+    Jsapi2Service(EngineRegistry registry, SessionManager sessions, String sessionId, long deadline) {
+        this.registry = registry;
+        this.sessions = sessions;
+        this.sessionId = sessionId;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return the session
+     * @throws BadRequestException no session is specified
+     */
+    private Session session() {
+        if (sessionId == null) {
+            throw new BadRequestException("session is required");
+        }
+        return sessions.get(sessionId);
+    }
+
+    /** the default engine used by this request, not evicted until {@link #release()} */
+    private EngineRegistry.Lease lease;
+
+    /** @return the session's own synthesizer, or the default one when no session is specified */
+    private Synthesizer synthesizer() {
+        if (sessionId != null) {
+            return sessions.get(sessionId).getSynthesizer();
+        } else {
+            if (lease == null) {
+                lease = registry.acquireDefault();
+            }
+            return lease.getSynthesizer();
         }
     }
 
+    /** audio of {@link #render(String)}, deleted at the end of the request when not written */
+    private java.nio.file.Path renderFile;
+
+    /** releases the default engine and the render file at the end of the request */
+    @PreDestroy
+    void release() {
+        if (lease != null) {
+            lease.close();
+            lease = null;
+        }
+        if (renderFile != null) {
+            try {
+                Files.deleteIfExists(renderFile);
+            } catch (IOException e) {
+logger.log(Level.WARNING, "render file: " + renderFile + ", " + e.getMessage());
+            }
+            renderFile = null;
+        }
+    }
+
+    /**
+     * Opens a session with its own engine.
+     *
+     * @return session handle to be carried as "session" query parameter on every request
+     */
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.TEXT_PLAIN)
+    @Path("open")
+    public String open(@QueryParam("modeName") String modeName) {
+logger.log(Level.DEBUG, "open: " + modeName);
+        return sessions.open(modeName).getId();
+    }
+
+    /** Closes the session, the engine is released after its queue becomes empty. */
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    @Path("close")
+    public void closeSession() {
+        if (sessionId != null) {
+            sessions.close(sessionId);
+        }
+    }
+
+    /**
+     * Pushes events of the session as server-sent events named by {@link SpeechEventDTO#type}.
+     * a session is required.
+     */
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @Path("events")
+    public void events(@Context SseEventSink sink, @Context Sse sse) {
+        session().subscribe(new Session.Subscriber() {
+            @Override public void onEvent(SpeechEventDTO event) {
+                if (sink.isClosed()) {
+                    throw new IllegalStateException("sink closed");
+                }
+                sink.send(sse.newEventBuilder().name(event.type).data(gson.toJson(event)).build());
+            }
+            @Override public void onClose() {
+                sink.close();
+            }
+        });
+    }
+
+    @GET
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
     @Path("getVoices")
-    public String getVoices(@QueryParam("modeName") String modeName) {
+    public VoiceDTO[] getVoices(@QueryParam("modeName") String modeName) {
 logger.log(Level.DEBUG, "getVoices: " + modeName);
-        createSynthesizer(modeName);
-        Voice[] voices = ((SynthesizerMode) getSynthesizer().getEngineMode()).getVoices();
-        VoiceDTO[] dtos = Arrays.stream(voices).map(VoiceDTO::new).toArray(VoiceDTO[]::new);
-        return gson.toJson(dtos);
+        registry.setDefault(modeName);
+        return registry.getVoices(modeName);
+    }
+
+    /**
+     * Finds voices of all engines in the voice catalog, no engine is selected.
+     * a mode not catalogued is added by its engine when specified.
+     *
+     * @param modeName null matches all modes
+     * @param locale "language[_country[_variant]]", null matches all locales
+     * @param name null matches all names
+     * @param gender {@link javax.speech.synthesis.Voice} gender, null matches all
+     * @param age {@link javax.speech.synthesis.Voice} age, null matches all
+     * @return voices with their mode names
+     */
+    @GET
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
+    @Path("getVoiceCatalog")
+    public VoiceDTO[] getVoiceCatalog(@QueryParam("modeName") String modeName,
+                                      @QueryParam("locale") String locale,
+                                      @QueryParam("name") String name,
+                                      @QueryParam("gender") Integer gender,
+                                      @QueryParam("age") Integer age,
+                                      @QueryParam("variant") Integer variant) {
+        VoiceCatalog catalog = registry.getCatalog();
+        if (modeName != null && !catalog.contains(modeName)) {
+            registry.getVoices(modeName);
+        }
+        return catalog.match(modeName, VoiceCatalog.toSpeechLocale(locale), name, gender, age, variant);
     }
 
 //    @GET
 //    @Produces(MediaType.TEXT_PLAIN)
 //    @Path("cancel")
 //    public boolean cancel() {
-//        return synthesizer.cancel();
+//        return synthesizer().cancel();
 //    }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
     @Path("cancel")
     public boolean cancel(@QueryParam("id") int id) throws EngineStateException {
+        Synthesizer synthesizer = synthesizer();
         if (id == -1) {
+            // the buffer is dropped by the cancelled event
             return synthesizer.cancel();
         } else {
-            return synthesizer.cancel(id);
+            boolean cancelled = synthesizer.cancel(id);
+            sessions.getLookahead().cancel(synthesizer, id);
+            return cancelled;
         }
     }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
     @Path("cancelAll")
     public boolean cancelAll() throws EngineStateException {
-        return synthesizer.cancelAll();
+        Synthesizer synthesizer = synthesizer();
+        boolean cancelled = synthesizer.cancelAll();
+        sessions.getLookahead().cancelAll(synthesizer);
+        return cancelled;
     }
 
     @GET
     @Produces(MediaType.TEXT_PLAIN)
     @Path("getPhonemes")
     public String getPhonemes(@QueryParam("text") String text) throws EngineStateException {
-        return synthesizer.getPhonemes(text);
+        return registry.getPhonemeCache().getPhonemes(synthesizer(), text);
     }
 
+    /** hits and misses of the server's caches */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
+    @Path("getCacheStats")
+    public String getCacheStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        PhonemeCache phonemes = registry.getPhonemeCache();
+        stats.put("phonemeHits", phonemes.getHits());
+        stats.put("phonemeMisses", phonemes.getMisses());
+        stats.put("phonemeEntries", (long) phonemes.size());
+        AudioCache audio = sessions.getCache();
+        stats.put("audioHits", audio.getHits());
+        stats.put("audioMisses", audio.getMisses());
+        stats.put("audioBytes", audio.getBytes());
+        return gson.toJson(stats);
+    }
+
+    /** utterances not ended per priority class of engines played on the server */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("getSchedulerStats")
+    public String getSchedulerStats() {
+        return gson.toJson(sessions.getScheduler().getQueued());
+    }
+
+    /** size, busy engines and queued utterances of engine pools per mode */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("getPoolStats")
+    public String getPoolStats() {
+        return gson.toJson(sessions.getPool().getStats());
+    }
+
+    @GET
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
     @Path("getSynthesizerProperties")
-    public String getSynthesizerProperties() {
-        SynthesizerProperties sp = synthesizer.getSynthesizerProperties();
-        return gson.toJson(new SynthesizerPropertiesDTO(sp));
+    public SynthesizerPropertiesDTO getSynthesizerProperties() {
+        SynthesizerProperties sp = synthesizer().getSynthesizerProperties();
+        return new SynthesizerPropertiesDTO(sp);
+    }
+
+    /**
+     * Sets properties at once.
+     *
+     * @param dto null fields are not changed
+     * @return all properties after the patch
+     */
+    @PATCH
+    @Consumes({MediaType.APPLICATION_JSON, Codecs.BINARY})
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
+    @Path("synthesizerProperties")
+    public SynthesizerPropertiesDTO patchSynthesizerProperties(SynthesizerPropertiesDTO dto) {
+        if (dto == null) {
+            throw new BadRequestException("patch is required");
+        }
+        SynthesizerProperties sp = synthesizer().getSynthesizerProperties();
+        dto.applyTo(sp);
+        if (sessionId != null) {
+            session().propertiesChanged();
+        }
+        return new SynthesizerPropertiesDTO(sp);
     }
 
     @POST
@@ -154,7 +401,7 @@ logger.log(Level.DEBUG, "getVoices: " + modeName);
     public void setSynthesizerProperties_voice(@FormParam("voice") String voice) {
         VoiceDTO dto = gson.fromJson(voice, VoiceDTO.class);
 logger.log(Level.DEBUG, "setVoice: " + dto.toVoice());
-        synthesizer.getSynthesizerProperties().setVoice(dto.toVoice());
+        synthesizer().getSynthesizerProperties().setVoice(dto.toVoice());
     }
 
     @GET
@@ -162,14 +409,14 @@ logger.log(Level.DEBUG, "setVoice: " + dto.toVoice());
     @Path("synthesizerProperties/volume")
     public void setSynthesizerProperties_volume(@QueryParam("volume") int volume) {
 logger.log(Level.DEBUG, "setVolume: " + volume);
-        synthesizer.getSynthesizerProperties().setVolume(volume);
+        synthesizer().getSynthesizerProperties().setVolume(volume);
     }
 
 //    @GET
 //    @Produces(MediaType.TEXT_PLAIN)
 //    @Path("allocate")
 //    public String allocate() throws AudioException, EngineException, EngineStateException, SecurityException {
-//        synthesizer.allocate();
+//        synthesizer().allocate();
 //        return "DONE";
 //    }
 
@@ -178,9 +425,9 @@ logger.log(Level.DEBUG, "setVolume: " + volume);
     @Path("allocate")
     public void allocate(@QueryParam("mode") int mode) throws IllegalArgumentException, AudioException, EngineException, EngineStateException, SecurityException {
         if (mode == -1) {
-            synthesizer.allocate();
+            synthesizer().allocate();
         } else {
-            synthesizer.allocate(mode);
+            synthesizer().allocate(mode);
         }
     }
 
@@ -188,7 +435,7 @@ logger.log(Level.DEBUG, "setVolume: " + volume);
 //    @Produces(MediaType.TEXT_PLAIN)
 //    @Path("deallocate")
 //    public void deallocate() throws AudioException, EngineException, EngineStateException {
-//        synthesizer.deallocate();
+//        synthesizer().deallocate();
 //    }
 
     @GET
@@ -196,9 +443,9 @@ logger.log(Level.DEBUG, "setVolume: " + volume);
     @Path("deallocate")
     public void deallocate(@QueryParam("mode") int mode) throws IllegalArgumentException, AudioException, EngineException, EngineStateException {
         if (mode == -1) {
-            synthesizer.deallocate();
+            synthesizer().deallocate();
         } else {
-            synthesizer.deallocate(mode);
+            synthesizer().deallocate(mode);
         }
     }
 
@@ -206,38 +453,58 @@ logger.log(Level.DEBUG, "setVolume: " + volume);
     @Produces(MediaType.TEXT_PLAIN)
     @Path("pause")
     public void pause() throws EngineStateException {
-        synthesizer.pause();
+        synthesizer().pause();
     }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
     @Path("resume")
     public boolean resume() throws EngineStateException {
-        return synthesizer.resume();
+        return synthesizer().resume();
     }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
     @Path("testEngineState")
     public boolean testEngineState(@QueryParam("state") long state) throws IllegalArgumentException {
-        return synthesizer.testEngineState(state);
+        return synthesizer().testEngineState(state);
     }
 
 //    @GET
 //    @Produces(MediaType.TEXT_PLAIN)
 //    @Path("waitEngineState")
 //    public long waitEngineState(@QueryParam("state") long state) throws InterruptedException, IllegalArgumentException, IllegalStateException {
-//        return synthesizer.waitEngineState(state);
+//        return synthesizer().waitEngineState(state);
 //    }
 
+    /**
+     * No thread is held while waiting, the response is resumed by a state change of the engine.
+     *
+     * @param timeout milliseconds, -1 means forever, omitted is forever
+     */
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
     @Path("waitEngineState")
-    public long waitEngineState(@QueryParam("state") long state, @QueryParam("timeout") long timeout) throws InterruptedException, IllegalArgumentException, IllegalStateException {
-        if (timeout == -1) {
-            return synthesizer.waitEngineState(state);
-        } else {
-            return synthesizer.waitEngineState(state, timeout);
+    public void waitEngineState(@QueryParam("state") long state, @QueryParam("timeout") @DefaultValue("-1") long timeout, @Suspended AsyncResponse response) {
+        waitEngineState(state, timeout).whenComplete((s, t) -> {
+            if (t != null) {
+                response.resume(t);
+            } else {
+                response.resume(s);
+            }
+        });
+    }
+
+    /**
+     * @param timeout milliseconds, -1 means forever
+     * @return completed by the engine state
+     */
+    CompletableFuture<Long> waitEngineState(long state, long timeout) {
+        try {
+            return EngineStateWaiter.await(synthesizer(), state, timeout).whenComplete((s, t) -> release());
+        } catch (RuntimeException e) {
+            release();
+            return CompletableFuture.failedFuture(e);
         }
     }
 
@@ -245,22 +512,22 @@ logger.log(Level.DEBUG, "setVolume: " + volume);
     @Produces(MediaType.APPLICATION_JSON)
     @Path("getAudioManager")
     public String getAudioManager() {
-        AudioManager am = synthesizer.getAudioManager();
+        AudioManager am = synthesizer().getAudioManager();
         return gson.toJson(am);
     }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
     @Path("getEngineState")
     public long getEngineState() {
-        return synthesizer.getEngineState();
+        return synthesizer().getEngineState();
     }
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("getVocabularyManager")
     public String getVocabularyManager() {
-        VocabularyManager vm = synthesizer.getVocabularyManager();
+        VocabularyManager vm = synthesizer().getVocabularyManager();
         return gson.toJson(vm);
     }
 
@@ -268,43 +535,43 @@ logger.log(Level.DEBUG, "setVolume: " + volume);
     @Produces(MediaType.TEXT_PLAIN)
     @Path("setEngineMask")
     public void setEngineMask(@QueryParam("mask") int mask) {
-        synthesizer.setEngineMask(mask);
+        synthesizer().setEngineMask(mask);
     }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
     @Path("getEngineMask")
     public int getEngineMask() {
-        return synthesizer.getEngineMask();
+        return synthesizer().getEngineMask();
     }
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("getSpeechEventExecutor")
     public SpeechEventExecutor getSpeechEventExecutor() {
-        return synthesizer.getSpeechEventExecutor();
+        return synthesizer().getSpeechEventExecutor();
     }
 
 //    @GET
 //    @Produces(MediaType.TEXT_PLAIN)
 //    @Path("setSpeechEventExecutor")
 //    public void setSpeechEventExecutor(@QueryParam("speechEventExecutor") SpeechEventExecutor speechEventExecutor) {
-//        synthesizer.setSpeechEventExecutor(speechEventExecutor);
+//        synthesizer().setSpeechEventExecutor(speechEventExecutor);
 //    }
 
     @GET
     @Produces(MediaType.TEXT_PLAIN)
     @Path("setSpeakableMask")
     public void setSpeakableMask(@QueryParam("mask") int mask) {
-        synthesizer.setSpeakableMask(mask);
+        synthesizer().setSpeakableMask(mask);
     }
 
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
     @Path("getSpeakableMask")
     public int getSpeakableMask() {
-        return synthesizer.getSpeakableMask();
+        return synthesizer().getSpeakableMask();
     }
 
 //    @GET
@@ -312,7 +579,7 @@ logger.log(Level.DEBUG, "setVolume: " + volume);
 //    @Path("speak")
 //    public int speak(@QueryParam("audio") AudioSegment audio)
 //            throws SpeakableException, EngineStateException, IllegalArgumentException {
-//        return synthesizer.speak(audio, e -> logger.log(Level.TRACE, e));
+//        return synthesizer().speak(audio, e -> logger.log(Level.TRACE, e));
 //    }
 
 //    @GET
@@ -320,15 +587,211 @@ logger.log(Level.DEBUG, "setVolume: " + volume);
 //    @Path("speak")
 //    public int speak(@QueryParam("speakable") Speakable speakable)
 //            throws SpeakableException, EngineStateException {
-//        return synthesizer.speak(speakable, e -> logger.log(Level.TRACE, e));
+//        return synthesizer().speak(speakable, e -> logger.log(Level.TRACE, e));
 //    }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
     @Path("speak")
     public int speak(@QueryParam("text") String text)
             throws EngineStateException {
-        return synthesizer.speak(text, e -> logger.log(Level.TRACE, e));
+        Synthesizer synthesizer = synthesizer();
+        ReentrantLock lock = speakLock(synthesizer);
+        lock.lock();
+        try {
+            return speak(synthesizer, text);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Speaks the text, as phonemes in ssml when the engine takes them, see {@link PhonemeCache}.
+     * when {@link Lookahead} is enabled, the text is synthesized ahead by the engine pool
+     * and the engine plays the audio.
+     * the caller holds the speak lock.
+     */
+    private int speak(Synthesizer synthesizer, String text) throws EngineStateException {
+        if (Lookahead.isEnabled()) {
+            Lookahead lookahead = sessions.getLookahead();
+            try {
+                return enqueue(synthesizer, l -> lookahead.speak(synthesizer, text, l));
+            } catch (SpeakableException e) {
+logger.log(Level.WARNING, "audio is not taken, speaks the text: " + e.getMessage());
+            }
+        }
+        if (PhonemeCache.isPhonemeSpeak(synthesizer)) {
+            try {
+                String markup = registry.getPhonemeCache().toMarkup(synthesizer, text);
+                return enqueue(synthesizer, l -> synthesizer.speakMarkup(markup, l));
+            } catch (SpeakableException e) {
+logger.log(Level.WARNING, "phonemes are not taken, speaks the text: " + e.getMessage());
+            }
+        }
+        try {
+            return enqueue(synthesizer, l -> synthesizer.speak(text, l));
+        } catch (SpeakableException e) {
+            throw new IllegalStateException(e); // plain text never fails by markup
+        }
+    }
+
+    /**
+     * Reads the text from the request body, so the length is not limited by the uri.
+     * when split, each sentence is enqueued as soon as it arrives and synthesis starts
+     * before the whole body is read.
+     *
+     * @param body utf-8 plain text
+     * @param split split into sentences at "。" and new lines, or speak as a whole
+     * @return speakable ids in order
+     */
+    @POST
+    @Consumes(MediaType.TEXT_PLAIN)
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
+    @Path("speak")
+    public int[] speak(InputStream body, @QueryParam("split") @DefaultValue("true") boolean split)
+            throws IOException, EngineStateException {
+        Synthesizer synthesizer = synthesizer();
+        Reader reader = new InputStreamReader(body, StandardCharsets.UTF_8);
+        List<Integer> ids = new ArrayList<>();
+        if (split) {
+            Sentences.split(reader, sentence -> {
+                ReentrantLock lock = speakLock(synthesizer);
+                lock.lock();
+                try {
+                    ids.add(speak(synthesizer, sentence));
+                } finally {
+                    lock.unlock();
+                }
+            });
+        } else {
+            StringWriter text = new StringWriter();
+            reader.transferTo(text);
+            ReentrantLock lock = speakLock(synthesizer);
+            lock.lock();
+            try {
+                ids.add(speak(synthesizer, text.toString()));
+            } finally {
+                lock.unlock();
+            }
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @param synthesisMarkup ssml in the request body
+     * @return speakable id
+     */
+    @POST
+    @Consumes({"application/ssml+xml", MediaType.APPLICATION_XML, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
+    @Path("speakMarkup")
+    public int speakMarkup(String synthesisMarkup) throws SpeakableException, EngineStateException {
+        Synthesizer synthesizer = synthesizer();
+        ReentrantLock lock = speakLock(synthesizer);
+        lock.lock();
+        try {
+            return enqueue(synthesizer, l -> synthesizer.speakMarkup(synthesisMarkup, l));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enqueues all utterances at once, no other speak is interleaved.
+     *
+     * @param utterances texts
+     * @return speakable ids in order
+     */
+    @POST
+    @Consumes({MediaType.APPLICATION_JSON, Codecs.BINARY})
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
+    @Path("speakBatch")
+    public int[] speakBatch(String[] utterances) throws EngineStateException {
+        if (utterances == null) {
+            throw new BadRequestException("utterances are required");
+        }
+        return speakAll(Arrays.asList(utterances));
+    }
+
+    /**
+     * Splits the document into sentences at "。" and new lines, and enqueues them at once.
+     *
+     * @param document plain text
+     * @return speakable ids in order
+     */
+    @POST
+    @Consumes(MediaType.TEXT_PLAIN)
+    @Produces({MediaType.APPLICATION_JSON, Codecs.BINARY})
+    @Path("speakDocument")
+    public int[] speakDocument(String document) throws EngineStateException {
+        return speakAll(Sentences.split(document));
+    }
+
+    /** @return speakable ids */
+    private int[] speakAll(List<String> texts) throws EngineStateException {
+        Synthesizer synthesizer = synthesizer();
+        int[] ids = new int[texts.size()];
+        ReentrantLock lock = speakLock(synthesizer);
+        lock.lock();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = speak(synthesizer, texts.get(i));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return ids;
+    }
+
+    /**
+     * Synthesizes the text and returns the audio as a chunked stream instead of playing it on the server.
+     * the audio is raw pcm described by the {@link RpcAudio#HEADER_MEDIA_LOCATOR} header.
+     * a session is required.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    @Path("speakAudio")
+    public Response speakAudio(@QueryParam("text") String text) {
+        Session session = session();
+        long deadline = Scheduler.deadline(this.deadline);
+        StreamingOutput output = out -> session.speakTo(text, deadline, out);
+        return Response.ok(output)
+                .header(RpcAudio.HEADER_MEDIA_LOCATOR, Session.getAudioLocator())
+                .build();
+    }
+
+    /**
+     * Synthesizes the text without playback and returns the audio as a wave file to download.
+     * the text is split into sentences at "。" and new lines, they are synthesized in parallel
+     * by the engine pool faster than real time, into a temporary file.
+     * a session is required.
+     */
+    @POST
+    @Consumes(MediaType.TEXT_PLAIN)
+    @Produces("audio/wav")
+    @Path("render")
+    public Response render(String text) throws IOException {
+        Session session = session();
+        // deleted when written or failed, otherwise at the end of the request
+        java.nio.file.Path file = Files.createTempFile("jsapi2-render-", ".pcm");
+        renderFile = file;
+        try {
+            long length = session.renderTo(text, Scheduler.deadline(deadline), file);
+            AudioFormat format = RpcAudio.toAudioFormat(Session.getAudioLocator());
+            StreamingOutput output = out -> {
+                try (AudioInputStream ais = new AudioInputStream(Files.newInputStream(file), format, length / format.getFrameSize())) {
+                    AudioSystem.write(ais, AudioFileFormat.Type.WAVE, out);
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            };
+            return Response.ok(output)
+                    .header("Content-Disposition", "attachment; filename=\"render.wav\"")
+                    .build();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
     }
 
 //    @GET
@@ -336,6 +799,6 @@ logger.log(Level.DEBUG, "setVolume: " + volume);
 //    @Path("speak")
 //    public int speakMarkup(@QueryParam("synthesisMarkup") String synthesisMarkup)
 //            throws SpeakableException, EngineStateException {
-//        return synthesizer.speakMarkup(synthesisMarkup, e -> logger.log(Level.TRACE, e));
+//        return synthesizer().speakMarkup(synthesisMarkup, e -> logger.log(Level.TRACE, e));
 //    }
 }
\ No newline at end of file
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.ByteArrayInputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.jetty.websocket.api.Callback;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import vavi.speech.rpc.jsapi2.client.RpcClient.SynthesizerPropertiesDTO;
+import vavi.speech.rpc.jsapi2.client.WebSocketTransport.Reply;
+import vavi.speech.rpc.jsapi2.client.WebSocketTransport.Request;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Jsapi2WebSocket. {@link Jsapi2Service} over a persistent websocket.
+ * <p>
+ * requests are processed concurrently and replied with their request ids as they complete,
+ * so a blocking call does not hold the following ones.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@WebSocket
+public class Jsapi2WebSocket {
+
+    private static final Logger logger = getLogger(Jsapi2WebSocket.class.getName());
+
+    /** */
+    private static final Gson gson = new GsonBuilder().create();
+
+    /** */
+    private final EngineRegistry registry;
+
+    /** */
+    private final SessionManager sessions;
+
+    /** */
+    private final Executor executor;
+
+    /** a websocket accepts one send at a time */
+    private final ReentrantLock sendLock = new ReentrantLock();
+
+    /** frames waiting for the one being sent, guarded by {@link #sendLock} */
+    private final Deque<String> pending = new ArrayDeque<>();
+
+    /** a frame is being sent, guarded by {@link #sendLock} */
+    private boolean sending;
+
+    /** method names known, others are labelled "unknown" in metrics */
+    private static final Set<String> methods = Set.of(
+            "events", "unsubscribe", "waitEngineState",
+            "open", "close", "getVoices", "getVoiceCatalog", "cancel", "cancelAll", "getPhonemes",
+            "getCacheStats", "getPoolStats", "getSchedulerStats", "getSynthesizerProperties",
+            "synthesizerProperties/voice", "synthesizerProperties", "synthesizerProperties/volume",
+            "allocate", "deallocate", "pause", "resume", "testEngineState", "getAudioManager", "getEngineState",
+            "getVocabularyManager", "setEngineMask", "getEngineMask", "setSpeakableMask", "getSpeakableMask",
+            "speak", "speakMarkup", "speakBatch", "speakDocument");
+
+    /** unsubscribers, key: request id of the subscription */
+    private final Map<Integer, Runnable> subscriptions = new ConcurrentHashMap<>();
+
+    /** */
+    public Jsapi2WebSocket(EngineRegistry registry, SessionManager sessions, Executor executor) {
+        this.registry = registry;
+        this.sessions = sessions;
+        this.executor = executor;
+    }
+
+    /** @return null when malformed */
+    private static Request parse(String message) {
+        try {
+            return gson.fromJson(message, Request.class);
+        } catch (JsonParseException e) {
+logger.log(Level.DEBUG, "malformed request: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @OnWebSocketMessage
+    public void onMessage(org.eclipse.jetty.websocket.api.Session webSocket, String message) {
+        Request request = parse(message);
+        if (request == null || request.method == null) {
+            Request bad = request != null ? request : new Request();
+            send(webSocket, reply(bad, null, new BadRequestException("malformed request")));
+            return;
+        }
+        if (request.params == null) {
+            request.params = Map.of();
+        }
+        if (request.method.equals("waitEngineState")) {
+            // replied by a state change, no thread is held
+            try {
+                Jsapi2Service service = new Jsapi2Service(registry, sessions, request.params.get("session"));
+                // omitted timeout is forever
+                long timeout = request.params.containsKey("timeout") ? longParam(request.params, "timeout") : -1;
+                service.waitEngineState(longParam(request.params, "state"), timeout)
+                        .whenComplete((state, t) -> send(webSocket, reply(request, state, t)));
+            } catch (Exception e) {
+                send(webSocket, reply(request, null, e));
+            }
+            return;
+        }
+        try {
+            execute(webSocket, request);
+        } catch (RejectedExecutionException e) {
+logger.log(Level.WARNING, "rejected: " + request.method);
+            send(webSocket, reply(request, null, new ServiceUnavailableException("server is busy")));
+        }
+    }
+
+    /** processes on the executor */
+    private void execute(org.eclipse.jetty.websocket.api.Session webSocket, Request request) {
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            Reply reply = process(webSocket, request);
+            long elapsed = System.nanoTime() - start;
+            // a label value is bounded, a client may send any method
+            String method = methods.contains(request.method) ? request.method : "unknown";
+            Metrics.counter("jsapi2_ws_requests_total", "method", method, "status", String.valueOf(reply.status)).increment();
+            Metrics.histogram("jsapi2_ws_request_seconds", "method", method).observeNanos(elapsed);
+            reply.serverTiming = TraceFilter.serverTiming(elapsed);
+            if (request.traceId != null) {
+logger.log(Level.DEBUG, "trace: " + request.traceId + " " + request.method + " " + reply.status + " " + reply.serverTiming);
+            }
+            send(webSocket, reply);
+        });
+    }
+
+    @OnWebSocketClose
+    public void onClose(int statusCode, String reason) {
+logger.log(Level.DEBUG, "closed: " + statusCode + ", " + reason);
+        subscriptions.values().forEach(Runnable::run);
+        subscriptions.clear();
+    }
+
+    /** */
+    private Reply process(org.eclipse.jetty.websocket.api.Session webSocket, Request request) {
+        try {
+            if (request.method.equals("events")) {
+                subscribe(webSocket, request);
+                return reply(request, null, null);
+            } else if (request.method.equals("unsubscribe")) {
+                Runnable unsubscriber = subscriptions.remove(Integer.parseInt(request.params.get("subscription")));
+                if (unsubscriber != null) {
+                    unsubscriber.run();
+                }
+                return reply(request, null, null);
+            }
+            Jsapi2Service service = new Jsapi2Service(registry, sessions, request.params.get("session"),
+                    request.params.containsKey("deadline") ? longParam(request.params, "deadline") : 0);
+            try {
+                return reply(request, invoke(service, request.method, request.params), null);
+            } finally {
+                service.release();
+            }
+        } catch (Exception e) {
+            return reply(request, null, e);
+        }
+    }
+
+    /** */
+    private static Reply reply(Request request, Object result, Throwable t) {
+        Reply reply = new Reply();
+        reply.id = request.id;
+        if (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (t instanceof NumberFormatException) {
+            t = new BadRequestException(t.getMessage());
+        }
+        if (t instanceof WebApplicationException e) {
+            reply.error = e.getMessage();
+            reply.status = e.getResponse().getStatus();
+        } else if (t != null) {
+logger.log(Level.ERROR, t.getMessage(), t);
+            reply.error = String.valueOf(t);
+            reply.status = 500;
+        } else {
+            reply.result = result == null ? null : result instanceof String s ? s : gson.toJson(result);
+            reply.status = result == null ? 204 : 200;
+        }
+        return reply;
+    }
+
+    /** events of the session are pushed with the id of the subscribing request */
+    private void subscribe(org.eclipse.jetty.websocket.api.Session webSocket, Request request) {
+        String sessionId = request.params.get("session");
+        if (sessionId == null) {
+            throw new BadRequestException("session is required");
+        }
+        Session session = sessions.get(sessionId);
+        Session.Subscriber subscriber = event -> {
+            Reply reply = new Reply();
+            reply.id = request.id;
+            reply.event = gson.toJson(event);
+            send(webSocket, reply);
+        };
+        session.subscribe(subscriber);
+        subscriptions.put(request.id, () -> session.unsubscribe(subscriber));
+    }
+
+    /**
+     * Queues the frame, jetty accepts no send while the previous one is pending.
+     * never blocks, callers include the synthesizer event thread.
+     */
+    private void send(org.eclipse.jetty.websocket.api.Session webSocket, Reply reply) {
+        String text = gson.toJson(reply);
+        sendLock.lock();
+        try {
+            if (sending) {
+                pending.add(text);
+                return;
+            }
+            sending = true;
+        } finally {
+            sendLock.unlock();
+        }
+        drain(webSocket, text);
+    }
+
+    /** @return the next frame, null when none and sending is over */
+    private String next() {
+        sendLock.lock();
+        try {
+            String text = pending.poll();
+            if (text == null) {
+                sending = false;
+            }
+            return text;
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Sends frames until one completes later, its callback goes on.
+     * a frame completed while being sent is followed in the loop, not by recursion.
+     */
+    private void drain(org.eclipse.jetty.websocket.api.Session webSocket, String text) {
+        while (text != null) {
+            Sent sent = new Sent(webSocket);
+            webSocket.sendText(text, sent);
+            if (!sent.returned()) {
+                return;
+            }
+            text = next();
+        }
+    }
+
+    /** continues the queue when the frame is sent */
+    private final class Sent implements Callback {
+        static final int SENDING = 0, RETURNED = 1, COMPLETED = 2;
+        final org.eclipse.jetty.websocket.api.Session webSocket;
+        final AtomicInteger state = new AtomicInteger(SENDING);
+        Sent(org.eclipse.jetty.websocket.api.Session webSocket) {
+            this.webSocket = webSocket;
+        }
+        /** @return true when completed already, the caller sends the next */
+        boolean returned() {
+            return !state.compareAndSet(SENDING, RETURNED);
+        }
+        @Override public void succeed() {
+            completed();
+        }
+        @Override public void fail(Throwable x) {
+logger.log(Level.WARNING, x.getMessage());
+            completed();
+        }
+        private void completed() {
+            if (!state.compareAndSet(SENDING, COMPLETED)) {
+                drain(webSocket, next());
+            }
+        }
+    }
+
+    /** same as the http endpoints */
+    private static Object invoke(Jsapi2Service s, String method, Map<String, String> p) throws Exception {
+        return switch (method) {
+            case "open" -> s.open(p.get("modeName"));
+            case "close" -> {
+                s.closeSession();
+                yield null;
+            }
+            case "getVoices" -> s.getVoices(p.get("modeName"));
+            case "getVoiceCatalog" -> s.getVoiceCatalog(p.get("modeName"), p.get("locale"), p.get("name"),
+                    integerParam(p, "gender"), integerParam(p, "age"), integerParam(p, "variant"));
+            case "cancel" -> s.cancel(intParam(p, "id"));
+            case "cancelAll" -> s.cancelAll();
+            case "getPhonemes" -> s.getPhonemes(p.get("text"));
+            case "getCacheStats" -> s.getCacheStats();
+            case "getPoolStats" -> s.getPoolStats();
+            case "getSchedulerStats" -> s.getSchedulerStats();
+            case "getSynthesizerProperties" -> s.getSynthesizerProperties();
+            case "synthesizerProperties/voice" -> {
+                s.setSynthesizerProperties_voice(p.get("voice"));
+                yield null;
+            }
+            case "synthesizerProperties" -> s.patchSynthesizerProperties(gson.fromJson(p.get("body"), SynthesizerPropertiesDTO.class));
+            case "synthesizerProperties/volume" -> {
+                s.setSynthesizerProperties_volume(intParam(p, "volume"));
+                yield null;
+            }
+            case "allocate" -> {
+                s.allocate(intParam(p, "mode"));
+                yield null;
+            }
+            case "deallocate" -> {
+                s.deallocate(intParam(p, "mode"));
+                yield null;
+            }
+            case "pause" -> {
+                s.pause();
+                yield null;
+            }
+            case "resume" -> s.resume();
+            case "testEngineState" -> s.testEngineState(longParam(p, "state"));
+            case "getAudioManager" -> s.getAudioManager();
+            case "getEngineState" -> s.getEngineState();
+            case "getVocabularyManager" -> s.getVocabularyManager();
+            case "setEngineMask" -> {
+                s.setEngineMask(intParam(p, "mask"));
+                yield null;
+            }
+            case "getEngineMask" -> s.getEngineMask();
+            case "setSpeakableMask" -> {
+                s.setSpeakableMask(intParam(p, "mask"));
+                yield null;
+            }
+            case "getSpeakableMask" -> s.getSpeakableMask();
+            case "speak" -> p.containsKey("body")
+                    ? s.speak(new ByteArrayInputStream(p.get("body").getBytes(StandardCharsets.UTF_8)), !"false".equals(p.get("split")))
+                    : s.speak(p.get("text"));
+            case "speakMarkup" -> s.speakMarkup(p.get("body"));
+            case "speakBatch" -> s.speakBatch(gson.fromJson(p.get("body"), String[].class));
+            case "speakDocument" -> s.speakDocument(p.get("body"));
+            default -> throw new NotFoundException("no such method: " + method);
+        };
+    }
+
+    /** missing is 0 as same as jax-rs */
+    private static int intParam(Map<String, String> p, String name) {
+        String value = p.get(name);
+        return value != null ? Integer.parseInt(value) : 0;
+    }
+
+    /** missing is null as same as jax-rs */
+    private static Integer integerParam(Map<String, String> p, String name) {
+        String value = p.get(name);
+        return value != null ? Integer.valueOf(value) : null;
+    }
+
+    /** missing is 0 as same as jax-rs */
+    private static long longParam(Map<String, String> p, String name) {
+        String value = p.get(name);
+        return value != null ? Long.parseLong(value) : 0;
+    }
+}
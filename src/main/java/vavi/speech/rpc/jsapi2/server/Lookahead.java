@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.speech.EngineStateException;
+import javax.speech.synthesis.SpeakableEvent;
+import javax.speech.synthesis.SpeakableException;
+import javax.speech.synthesis.SpeakableListener;
+import javax.speech.synthesis.Synthesizer;
+
+import org.jvoicexml.jsapi2.BaseAudioSegment;
+import vavi.speech.rpc.jsapi2.client.RpcAudio;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Lookahead. synthesizes queued texts ahead while the engine plays the current one.
+ * <p>
+ * a text is enqueued to the engine as an audio segment, engines of the {@link EnginePool}
+ * synthesize the next texts into buffers meanwhile, so the engine plays them without
+ * waiting for synthesis. a segment not synthesized yet when its turn comes is
+ * synthesized at once and the engine waits for it.
+ * buffers are dropped when segments end or are cancelled, and when the engine is removed.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.server.lookahead ... texts synthesized ahead of the playing one per engine, 0 disables, default 0</li>
+ *  <li>vavi.speech.rpc.server.lookahead.maxBytes ... bytes of buffered audio per engine, no more texts are started over this, default 16777216</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class Lookahead implements Closeable {
+
+    private static final Logger logger = getLogger(Lookahead.class.getName());
+
+    /** texts synthesized ahead of the playing one */
+    private static int lookahead = 0;
+
+    /** bytes of buffered audio per engine */
+    private static long maxBytes = 16 * 1024 * 1024;
+
+    /* */
+    static {
+        lookahead = Integer.parseInt(System.getProperty("vavi.speech.rpc.server.lookahead", String.valueOf(lookahead)));
+        maxBytes = Long.parseLong(System.getProperty("vavi.speech.rpc.server.lookahead.maxBytes", String.valueOf(maxBytes)));
+    }
+
+    /** @return true when texts are synthesized ahead */
+    public static boolean isEnabled() {
+        return lookahead > 0;
+    }
+
+    /** a text in the engine queue */
+    private static final class Item {
+        final String text;
+        /** speakable id, 0 until enqueued */
+        volatile int id;
+        /** null until started */
+        CompletableFuture<EnginePool.Rendered> job;
+        /** audio, null until started */
+        CompletableFuture<byte[]> audio;
+        /** bytes counted in the budget */
+        long bytes;
+        boolean released;
+        Item(String text) {
+            this.text = text;
+        }
+    }
+
+    /** texts of an engine in the order of its queue */
+    private final class Pipeline {
+        final Synthesizer synthesizer;
+        final String modeName;
+        /** lanes of the pool, each text has its own to be synthesized in parallel */
+        final String lane = UUID.randomUUID().toString();
+        final ReentrantLock lock = new ReentrantLock();
+        /** not released, guarded by lock */
+        final Deque<Item> items = new ArrayDeque<>();
+        /** items started and not released, guarded by lock */
+        int started;
+        /** buffered audio, guarded by lock */
+        long bytes;
+        /** guarded by lock */
+        long sequence;
+
+        Pipeline(Synthesizer synthesizer) {
+            this.synthesizer = synthesizer;
+            this.modeName = synthesizer.getEngineMode().getClass().getName();
+        }
+
+        Item add(String text) {
+            lock.lock();
+            try {
+                Item item = new Item(text);
+                items.addLast(item);
+                fill();
+                return item;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** starts items from the head within the lookahead and the budget, the lock is held */
+        private void fill() {
+            for (Item item : items) {
+                if (started > ahead || bytes >= budget) {
+                    break;
+                }
+                if (item.job == null) {
+                    start(item);
+                }
+            }
+        }
+
+        /** the lock is held */
+        private void start(Item item) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            // the deadline is decided at the engine's turn by the scheduler
+            item.job = pool.submit(modeName, lane + "#" + sequence++, synthesizer.getSynthesizerProperties(), item.text, Long.MAX_VALUE, out, 0);
+            item.audio = item.job.thenApply(rendered -> {
+                if (!rendered.completed()) {
+                    throw new CancellationException("cancelled: " + item.text);
+                }
+                byte[] audio = out.toByteArray();
+                lock.lock();
+                try {
+                    if (!item.released) {
+                        item.bytes = audio.length;
+                        bytes += audio.length;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                return audio;
+            });
+            started++;
+        }
+
+        /** @return audio of the item, synthesized now if not started */
+        byte[] await(Item item) throws IOException {
+            lock.lock();
+            try {
+                if (item.job == null && !item.released) {
+                    start(item);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (item.audio == null) {
+                return new byte[0];
+            }
+            Metrics.counter("jsapi2_lookahead_total", "mode", modeName, "result", item.audio.isDone() ? "ready" : "waited").increment();
+            try {
+                return item.audio.get();
+            } catch (CancellationException e) {
+                return new byte[0];
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    return new byte[0];
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+
+        /** drops the buffer of the item, or stops synthesizing it */
+        void release(Item item) {
+            lock.lock();
+            try {
+                if (item.released) {
+                    return;
+                }
+                item.released = true;
+                items.remove(item);
+                if (item.job != null) {
+                    item.job.cancel(false);
+                    started--;
+                    bytes -= item.bytes;
+                }
+                fill();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** @return items of the id, all when id is -1 */
+        List<Item> find(int id) {
+            lock.lock();
+            try {
+                return items.stream().filter(item -> id == -1 || item.id == id).toList();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** reads the audio of an item at the first read */
+    private static final class PrefetchedInputStream extends InputStream {
+        final Pipeline pipeline;
+        final Item item;
+        InputStream in;
+        PrefetchedInputStream(Pipeline pipeline, Item item) {
+            this.pipeline = pipeline;
+            this.item = item;
+        }
+        private InputStream in() throws IOException {
+            if (in == null) {
+                in = new ByteArrayInputStream(pipeline.await(item));
+            }
+            return in;
+        }
+        @Override public int read() throws IOException {
+            return in().read();
+        }
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            return in().read(b, off, len);
+        }
+        @Override public int available() throws IOException {
+            return in == null ? 0 : in.available();
+        }
+        @Override public void close() {
+            pipeline.release(item);
+        }
+    }
+
+    /** synthesizes texts ahead */
+    private final EnginePool pool;
+
+    /** texts synthesized ahead of the playing one */
+    private final int ahead;
+
+    /** bytes of buffered audio per engine */
+    private final long budget;
+
+    /** key: engine, removed by {@link #remove(Synthesizer)}, guarded by {@link #pipelinesLock} */
+    private final Map<Synthesizer, Pipeline> pipelines = new HashMap<>();
+
+    /** */
+    private final ReentrantLock pipelinesLock = new ReentrantLock();
+
+    /** configured by the system properties */
+    public Lookahead(EnginePool pool) {
+        this(pool, lookahead, maxBytes);
+    }
+
+    /**
+     * @param ahead texts synthesized ahead of the playing one
+     * @param budget bytes of buffered audio per engine
+     */
+    Lookahead(EnginePool pool, int ahead, long budget) {
+        this.pool = pool;
+        this.ahead = ahead;
+        this.budget = budget;
+    }
+
+    /** */
+    private Pipeline pipeline(Synthesizer synthesizer) {
+        pipelinesLock.lock();
+        try {
+            return pipelines.computeIfAbsent(synthesizer, Pipeline::new);
+        } finally {
+            pipelinesLock.unlock();
+        }
+    }
+
+    /** @return pipelines existing now */
+    private List<Pipeline> pipelines() {
+        pipelinesLock.lock();
+        try {
+            return new ArrayList<>(pipelines.values());
+        } finally {
+            pipelinesLock.unlock();
+        }
+    }
+
+    /**
+     * Enqueues the text as an audio segment synthesized ahead.
+     * the caller serializes speaks to the engine, texts are played in the order of calls.
+     *
+     * @param listener receives events of the segment, nullable
+     * @return speakable id
+     */
+    public int speak(Synthesizer synthesizer, String text, SpeakableListener listener) throws SpeakableException, EngineStateException {
+        Pipeline pipeline = pipeline(synthesizer);
+        Item item = pipeline.add(text);
+        AudioFormat format = RpcAudio.toAudioFormat(Session.getAudioLocator());
+        AudioInputStream ais = new AudioInputStream(new PrefetchedInputStream(pipeline, item), format, AudioSystem.NOT_SPECIFIED);
+        try {
+            item.id = synthesizer.speak(new BaseAudioSegment(Session.getAudioLocator(), text, ais), e -> {
+                if (listener != null) {
+                    listener.speakableUpdate(e);
+                }
+                int id = e.getId();
+                if (id == SpeakableEvent.SPEAKABLE_ENDED || id == SpeakableEvent.SPEAKABLE_CANCELLED || id == SpeakableEvent.SPEAKABLE_FAILED) {
+                    pipeline.release(item);
+                }
+            });
+            return item.id;
+        } catch (SpeakableException | RuntimeException e) {
+            pipeline.release(item);
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the buffer of the cancelled speakable.
+     *
+     * @param id speakable id
+     */
+    public void cancel(Synthesizer synthesizer, int id) {
+        drop(synthesizer, id);
+    }
+
+    /** drops buffers of all speakables of the engine */
+    public void cancelAll(Synthesizer synthesizer) {
+        drop(synthesizer, -1);
+    }
+
+    /** @param id -1 for all */
+    private void drop(Synthesizer synthesizer, int id) {
+        Pipeline pipeline;
+        pipelinesLock.lock();
+        try {
+            pipeline = pipelines.get(synthesizer);
+        } finally {
+            pipelinesLock.unlock();
+        }
+        if (pipeline != null) {
+            List<Item> items = pipeline.find(id);
+logger.log(Level.DEBUG, "drop: " + id + ", " + items.size() + " items");
+            items.forEach(pipeline::release);
+        }
+    }
+
+    /**
+     * Forgets the engine released or deallocated, buffers of its speakables are dropped.
+     */
+    public void remove(Synthesizer synthesizer) {
+        Pipeline pipeline;
+        pipelinesLock.lock();
+        try {
+            pipeline = pipelines.remove(synthesizer);
+        } finally {
+            pipelinesLock.unlock();
+        }
+        if (pipeline != null) {
+            pipeline.find(-1).forEach(pipeline::release);
+        }
+    }
+
+    /** @return bytes of buffered audio of all engines */
+    public long getBytes() {
+        long total = 0;
+        for (Pipeline pipeline : pipelines()) {
+            pipeline.lock.lock();
+            try {
+                total += pipeline.bytes;
+            } finally {
+                pipeline.lock.unlock();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        pipelines().forEach(pipeline -> pipeline.find(-1).forEach(pipeline::release));
+        pipelinesLock.lock();
+        try {
+            pipelines.clear();
+        } finally {
+            pipelinesLock.unlock();
+        }
+    }
+}
@@ -9,12 +9,24 @@ package vavi.speech.rpc.jsapi2.server;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.net.URI;
-import javax.speech.synthesis.Synthesizer;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.ee10.websocket.server.config.JettyWebSocketServletContainerInitializer;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.glassfish.jersey.internal.inject.AbstractBinder;
 import org.glassfish.jersey.jetty.JettyHttpContainerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
+import vavi.speech.rpc.jsapi2.client.CodecProvider;
 
 import static java.lang.System.getLogger;
 
@@ -29,6 +41,52 @@ public class Main {
 
     private static final Logger logger = getLogger(Main.class.getName());
 
+    /** accepts h2c, "vavi.speech.rpc.server.h2c", default true */
+    private static boolean h2c = true;
+
+    /** handlers run on virtual threads, "vavi.speech.rpc.server.virtualThreads", default false */
+    private static boolean virtualThreads = false;
+
+    /** handlers running at once, "vavi.speech.rpc.server.maxConcurrency", default 256 */
+    private static int maxConcurrency = 256;
+
+    /** handlers waiting, more are rejected, "vavi.speech.rpc.server.maxQueue", default 1024 */
+    private static int maxQueue = 1024;
+
+    /** platform threads of jetty, "vavi.speech.rpc.server.maxThreads", default 200 */
+    private static int maxThreads = 200;
+
+    /* */
+    static {
+        h2c = Boolean.parseBoolean(System.getProperty("vavi.speech.rpc.server.h2c", String.valueOf(h2c)));
+        virtualThreads = Boolean.parseBoolean(System.getProperty("vavi.speech.rpc.server.virtualThreads", String.valueOf(virtualThreads)));
+        maxConcurrency = Integer.parseInt(System.getProperty("vavi.speech.rpc.server.maxConcurrency", String.valueOf(maxConcurrency)));
+        maxQueue = Integer.parseInt(System.getProperty("vavi.speech.rpc.server.maxQueue", String.valueOf(maxQueue)));
+        maxThreads = Integer.parseInt(System.getProperty("vavi.speech.rpc.server.maxThreads", String.valueOf(maxThreads)));
+    }
+
+    /** values held by components, read at every scrape */
+    private static void registerMetrics(EngineRegistry registry, SessionManager sessions, HandlerExecutor handlers) {
+        Metrics.gauge("jsapi2_handlers_running", handlers::getRunning);
+        Metrics.gauge("jsapi2_handlers_queued", handlers::getQueued);
+        AudioCache audio = sessions.getCache();
+        Metrics.counter("jsapi2_cache_hits_total", audio::getHits, "cache", "audio");
+        Metrics.counter("jsapi2_cache_misses_total", audio::getMisses, "cache", "audio");
+        Metrics.gauge("jsapi2_cache_hit_ratio", () -> ratio(audio.getHits(), audio.getMisses()), "cache", "audio");
+        Metrics.gauge("jsapi2_cache_bytes", audio::getBytes, "cache", "audio");
+        PhonemeCache phonemes = registry.getPhonemeCache();
+        Metrics.counter("jsapi2_cache_hits_total", phonemes::getHits, "cache", "phoneme");
+        Metrics.counter("jsapi2_cache_misses_total", phonemes::getMisses, "cache", "phoneme");
+        Metrics.gauge("jsapi2_cache_hit_ratio", () -> ratio(phonemes.getHits(), phonemes.getMisses()), "cache", "phoneme");
+        Metrics.gauge("jsapi2_cache_entries", phonemes::size, "cache", "phoneme");
+        Metrics.gauge("jsapi2_lookahead_bytes", sessions.getLookahead()::getBytes);
+    }
+
+    /** */
+    private static double ratio(long hits, long misses) {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
     /**
      * @param args none
      */
@@ -38,19 +96,7 @@ logger.log(Level.DEBUG, "GOOGLE_APPLICATION_CREDENTIALS: " + System.getenv("GOOG
 
         Server server = null;
         try {
-            ResourceConfig config = new ResourceConfig()
-                    .register(Jsapi2Service.class)
-                    .register(new AbstractBinder() {
-                        @Override protected void configure() {
-                            bindFactory(Jsapi2Service::getSynthesizer).to(Synthesizer.class);
-                        }
-                    });
-            server = JettyHttpContainerFactory.createServer(
-                    URI.create("http://localhost:60090/"), config); // TODO ssl
-logger.log(Level.DEBUG, "server created");
-
-            server.start();
-logger.log(Level.DEBUG, "server started");
+            server = start(URI.create("http://localhost:60090/")); // TODO ssl
             server.join();
 logger.log(Level.DEBUG, "server joined");
         } catch (Exception e) {
@@ -62,4 +108,84 @@ logger.log(Level.DEBUG, "server joined");
             }
         }
     }
+
+    /**
+     * Starts a server in this jvm, engines and sessions are closed when the server stops.
+     *
+     * @param uri e.g. "http://localhost:60090/"
+     * @return started server
+     */
+    public static Server start(URI uri) throws Exception {
+        EngineRegistry registry = new EngineRegistry();
+        SessionManager sessions = new SessionManager();
+        registry.addDeallocateListener(sessions.getLookahead()::remove);
+        ExecutorService executor = virtualThreads ? HandlerExecutor.newVirtualThreadPerTaskExecutor() : null;
+        // false when the runtime has no virtual threads
+        boolean useVirtualThreads = executor != null;
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool();
+        }
+        HandlerExecutor handlers = new HandlerExecutor(executor, maxConcurrency, maxQueue);
+        registerMetrics(registry, sessions, handlers);
+
+        ResourceConfig config = new ResourceConfig()
+                .register(Jsapi2Service.class)
+                .register(MetricsService.class)
+                .register(MetricsFilter.class)
+                .register(TraceFilter.class)
+                .register(CodecProvider.class)
+                .register(new AbstractBinder() {
+                    @Override protected void configure() {
+                        bind(registry).to(EngineRegistry.class);
+                        bind(sessions).to(SessionManager.class);
+                    }
+                });
+        Server server = JettyHttpContainerFactory.createServer(uri, config, false);
+logger.log(Level.DEBUG, "server created");
+
+        QueuedThreadPool threadPool = (QueuedThreadPool) server.getThreadPool();
+        threadPool.setMaxThreads(maxThreads);
+        if (useVirtualThreads) {
+            // blocking handlers run on virtual threads, platform threads only do i/o
+            threadPool.setVirtualThreadsExecutor(handlers);
+logger.log(Level.INFO, "virtual threads: maxConcurrency: " + maxConcurrency + ", maxQueue: " + maxQueue);
+        }
+
+        // websocket version, jersey handles the rest
+        ServletContextHandler webSocket = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        webSocket.setContextPath("/ws"); // WebSocketTransport.PATH
+        JettyWebSocketServletContainerInitializer.configure(webSocket, (context, container) -> {
+            container.setIdleTimeout(Duration.ofMinutes(30));
+            container.addMapping("/jsapi2", (req, res) -> new Jsapi2WebSocket(registry, sessions, handlers));
+        });
+        server.setHandler(new Handler.Sequence(webSocket, server.getHandler()));
+
+        if (h2c) {
+            // http/2 without tls next to http/1.1, by prior knowledge or upgrade
+            ServerConnector connector = (ServerConnector) server.getConnectors()[0];
+            HttpConfiguration httpConfig = connector.getConnectionFactory(HttpConnectionFactory.class).getHttpConfiguration();
+            connector.addConnectionFactory(new HTTP2CServerConnectionFactory(httpConfig));
+        }
+
+        ExecutorService e = executor;
+        server.addEventListener(new LifeCycle.Listener() {
+            @Override public void lifeCycleStopped(LifeCycle event) {
+                e.shutdownNow();
+                sessions.close();
+                registry.close();
+            }
+        });
+
+        try {
+            server.start();
+        } catch (Exception ex) {
+            server.stop();
+            e.shutdownNow();
+            sessions.close();
+            registry.close();
+            throw ex;
+        }
+logger.log(Level.DEBUG, "server started");
+        return server;
+    }
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+
+/**
+ * Metrics. a small registry of counters, gauges and histograms written in the prometheus text format.
+ * <p>
+ * a metric is named by its family and labels given as name value pairs,
+ * the same name and labels always return the same metric.
+ *
+ * <pre>
+ * Metrics.counter("jsapi2_requests_total", "method", "speak").increment();
+ * Metrics.histogram("jsapi2_request_seconds", "method", "speak").observe(seconds);
+ * </pre>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class Metrics {
+
+    /** */
+    private Metrics() {}
+
+    /** prometheus text exposition format */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** for latencies in seconds */
+    public static final double[] SECONDS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+    /** for ratios like real-time factor */
+    public static final double[] RATIOS = {0.05, 0.1, 0.2, 0.3, 0.5, 0.75, 1, 1.5, 2, 5, 10};
+
+    /** */
+    public static final class Counter {
+        private final DoubleAdder value = new DoubleAdder();
+        /** */
+        public void increment() {
+            value.add(1);
+        }
+        /** */
+        public void increment(double amount) {
+            value.add(amount);
+        }
+        /** */
+        public double get() {
+            return value.sum();
+        }
+    }
+
+    /** cumulative buckets, a sum and a count */
+    public static final class Histogram {
+        private final double[] bounds;
+        private final LongAdder[] buckets;
+        private final DoubleAdder sum = new DoubleAdder();
+        private final LongAdder count = new LongAdder();
+        private Histogram(double[] bounds) {
+            this.bounds = bounds;
+            this.buckets = new LongAdder[bounds.length];
+            Arrays.setAll(buckets, i -> new LongAdder());
+        }
+        /** */
+        public void observe(double value) {
+            for (int i = 0; i < bounds.length; i++) {
+                if (value <= bounds[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            sum.add(value);
+            count.increment();
+        }
+        /** @param nanos elapsed nano seconds, observed as seconds */
+        public void observeNanos(long nanos) {
+            observe(nanos / 1e9);
+        }
+        /** */
+        public long getCount() {
+            return count.sum();
+        }
+    }
+
+    /** metrics of a name, key: rendered labels */
+    private record Family(String type, Map<String, Object> metrics) {}
+
+    /** key: name */
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /** */
+    private static Family family(String name, String type) {
+        Family family = families.computeIfAbsent(name, k -> new Family(type, new ConcurrentHashMap<>()));
+        if (!family.type().equals(type)) {
+            throw new IllegalArgumentException(name + " is a " + family.type());
+        }
+        return family;
+    }
+
+    /** @param labels name value pairs */
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("labels must be name value pairs");
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    /** */
+    private static String escape(String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /** @param labels name value pairs */
+    public static Counter counter(String name, String... labels) {
+        return (Counter) family(name, "counter").metrics().computeIfAbsent(labels(labels), k -> new Counter());
+    }
+
+    /** latencies in seconds */
+    public static Histogram histogram(String name, String... labels) {
+        return histogram(name, SECONDS, labels);
+    }
+
+    /**
+     * @param bounds upper bounds of buckets in ascending order, the first call decides them
+     * @param labels name value pairs
+     */
+    public static Histogram histogram(String name, double[] bounds, String... labels) {
+        return (Histogram) family(name, "histogram").metrics().computeIfAbsent(labels(labels), k -> new Histogram(bounds));
+    }
+
+    /**
+     * Registers a value read at every scrape, a later registration replaces the former.
+     *
+     * @param labels name value pairs
+     */
+    public static void gauge(String name, DoubleSupplier value, String... labels) {
+        family(name, "gauge").metrics().put(labels(labels), value);
+    }
+
+    /** counters of which values are held by others, e.g. hits of a cache */
+    public static void counter(String name, DoubleSupplier value, String... labels) {
+        family(name, "counter").metrics().put(labels(labels), value);
+    }
+
+    /** writes all metrics in the prometheus text format */
+    public static void scrape(Writer writer) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Family> f : families.entrySet()) {
+            String name = f.getKey();
+            Family family = f.getValue();
+            sb.append("# TYPE ").append(name).append(' ').append(family.type()).append('\n');
+            for (Map.Entry<String, Object> m : new TreeMap<>(family.metrics()).entrySet()) {
+                String labels = m.getKey();
+                Object metric = m.getValue();
+                if (metric instanceof Counter c) {
+                    sample(sb, name, labels, c.get());
+                } else if (metric instanceof DoubleSupplier s) {
+                    sample(sb, name, labels, s.getAsDouble());
+                } else if (metric instanceof Histogram h) {
+                    long cumulative = 0;
+                    for (int i = 0; i < h.bounds.length; i++) {
+                        cumulative += h.buckets[i].sum();
+                        sample(sb, name + "_bucket", with(labels, "le", String.valueOf(h.bounds[i])), cumulative);
+                    }
+                    sample(sb, name + "_bucket", with(labels, "le", "+Inf"), h.count.sum());
+                    sample(sb, name + "_sum", labels, h.sum.sum());
+                    sample(sb, name + "_count", labels, h.count.sum());
+                }
+            }
+        }
+        writer.write(sb.toString());
+        writer.flush();
+    }
+
+    /** */
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    /** adds a label to rendered labels */
+    private static String with(String labels, String name, String value) {
+        String label = name + "=\"" + value + "\"";
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+}
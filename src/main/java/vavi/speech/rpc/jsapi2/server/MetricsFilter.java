@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+
+
+/**
+ * MetricsFilter. counts requests and observes their latencies per endpoint.
+ * <p>
+ * a latency is until the response headers, a streamed body like speakAudio is not included.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@Provider
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    /** request property */
+    private static final String START = MetricsFilter.class.getName() + ".start";
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        request.setProperty(START, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object start = request.getProperty(START);
+        if (start == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - (Long) start;
+        // paths not matched are not labeled by themselves, not to grow series unbounded
+        String path = response.getStatus() == Response.Status.NOT_FOUND.getStatusCode() && request.getUriInfo().getMatchedResources().isEmpty() ?
+                "unmatched" : request.getUriInfo().getPath();
+        String method = request.getMethod();
+        String status = String.valueOf(response.getStatus());
+        Metrics.counter("jsapi2_http_requests_total", "method", method, "path", path, "status", status).increment();
+        Metrics.histogram("jsapi2_http_request_seconds", "method", method, "path", path).observeNanos(elapsed);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.StreamingOutput;
+
+
+/**
+ * MetricsService. {@link Metrics} for prometheus.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@Path("metrics")
+public class MetricsService {
+
+    @GET
+    @Produces(Metrics.CONTENT_TYPE)
+    public StreamingOutput scrape() {
+        return out -> Metrics.scrape(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import javax.speech.EngineMode;
+import javax.speech.EngineStateException;
+import javax.speech.synthesis.Synthesizer;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * PhonemeCache. phonemes of sentences, morphological analysis runs once per sentence.
+ * <p>
+ * an entry is keyed by the engine, its phonemizer and the normalized sentence.
+ * jsapi2 does not expose an engine's phonemizer, it is fixed per engine mode by the engine's
+ * configuration, so the mode name stands for the phonemizer. the cache is an lru bounded by entries.
+ * a sentence the engine has no phonemes for is cached as absent.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.server.phonemeCache.maxEntries ... sentences kept, 0 disables the cache, default 10000</li>
+ *  <li>vavi.speech.rpc.server.phonemeSpeak ... comma separated mode class names whose engines take
+ *  phonemes in ssml, texts spoken to them are sent as ssml phoneme elements, default none</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class PhonemeCache {
+
+    private static final Logger logger = getLogger(PhonemeCache.class.getName());
+
+    /** */
+    private static int maxEntries = 10000;
+
+    /** mode class names */
+    private static Set<String> phonemeSpeak = Set.of();
+
+    /* */
+    static {
+        maxEntries = Integer.parseInt(System.getProperty("vavi.speech.rpc.server.phonemeCache.maxEntries", String.valueOf(maxEntries)));
+        String value = System.getProperty("vavi.speech.rpc.server.phonemeSpeak");
+        if (value != null) {
+            phonemeSpeak = Arrays.stream(value.split(",")).map(String::strip).filter(s -> !s.isEmpty()).collect(Collectors.toSet());
+        }
+    }
+
+    /** */
+    private record Key(String engine, String phonemizer, String sentence) {}
+
+    /** lru, empty when the engine has no phonemes, guarded by {@link #lock} */
+    private final Map<Key, Optional<String>> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Key, Optional<String>> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /** */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Phonemes of each sentence of the text, joined by new lines when the text has several sentences.
+     * the engine is called only for sentences not cached, without holding the cache.
+     *
+     * @return null when the engine has no phonemes for any sentence, a sentence without phonemes
+     *         is an empty line
+     */
+    public String getPhonemes(Synthesizer synthesizer, String text) throws EngineStateException {
+        if (maxEntries <= 0 || text == null) {
+            return synthesizer.getPhonemes(text);
+        }
+        List<String> sentences = Sentences.split(text);
+        if (sentences.isEmpty()) {
+            return synthesizer.getPhonemes(text);
+        }
+        EngineMode mode = synthesizer.getEngineMode();
+        String engine = mode.getClass().getName();
+        String phonemizer = String.valueOf(mode.getModeName());
+        StringJoiner result = new StringJoiner("\n");
+        boolean found = false;
+        for (String sentence : sentences) {
+            Key key = new Key(engine, phonemizer, AudioCache.normalize(sentence));
+            Optional<String> phonemes;
+            lock.lock();
+            try {
+                phonemes = entries.get(key);
+            } finally {
+                lock.unlock();
+            }
+            if (phonemes != null) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                phonemes = Optional.ofNullable(synthesizer.getPhonemes(sentence));
+                lock.lock();
+                try {
+                    entries.put(key, phonemes);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            found |= phonemes.isPresent();
+            result.add(phonemes.orElse(""));
+        }
+        return found ? result.toString() : null;
+    }
+
+    /** @return true when texts spoken to the engine are sent as phonemes */
+    public static boolean isPhonemeSpeak(Synthesizer synthesizer) {
+        return !phonemeSpeak.isEmpty() && phonemeSpeak.contains(synthesizer.getEngineMode().getClass().getName());
+    }
+
+    /**
+     * @return ssml speaking the text by phonemes of its sentences, a sentence without phonemes as it is
+     */
+    public String toMarkup(Synthesizer synthesizer, String text) throws EngineStateException {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        sb.append("<speak version=\"1.0\" xmlns=\"http://www.w3.org/2001/10/synthesis\">");
+        for (String sentence : Sentences.split(text)) {
+            String phonemes = getPhonemes(synthesizer, sentence);
+            if (phonemes == null || phonemes.isEmpty()) {
+                sb.append(escape(sentence));
+            } else {
+                sb.append("<phoneme ph=\"").append(escape(phonemes)).append("\">")
+                        .append(escape(sentence)).append("</phoneme>");
+            }
+        }
+        sb.append("</speak>");
+logger.log(Level.TRACE, sb);
+        return sb.toString();
+    }
+
+    /** */
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    /** */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** sentences kept */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** */
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
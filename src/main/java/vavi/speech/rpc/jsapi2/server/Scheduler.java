@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.speech.EngineStateException;
+import javax.speech.synthesis.SpeakableEvent;
+import javax.speech.synthesis.SpeakableException;
+import javax.speech.synthesis.SpeakableListener;
+import javax.speech.synthesis.Synthesizer;
+import javax.speech.synthesis.SynthesizerProperties;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Scheduler. priority classes, deadlines and preemption of utterances.
+ * <p>
+ * an utterance belongs to a class by {@link SynthesizerProperties#getPriority()} of the
+ * client's engine, over {@link SynthesizerProperties#NORM_PRIORITY} is {@link PriorityClass#ALERT},
+ * under it is {@link PriorityClass#BACKGROUND}.
+ * <ul>
+ *  <li>the {@link EnginePool} starts utterances of higher classes first, clients take turns in a class</li>
+ *  <li>an utterance not started until its deadline is dropped</li>
+ *  <li>an utterance of a higher class preempts those of lower classes, they are cancelled by
+ *      {@link Synthesizer#cancel(int)} as a client does. the pool synthesizes a preempted one
+ *      again later when nothing of it is sent yet</li>
+ * </ul>
+ * for the engine queue played on the server, which is first in first out, lower classes
+ * queued before are cancelled by preemption and dropped, they are not spoken again.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.server.scheduler.deadline ... default milliseconds an utterance may wait, 0 is no deadline, default 0</li>
+ *  <li>vavi.speech.rpc.server.scheduler.preempt ... higher classes preempt lower classes, default true</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class Scheduler {
+
+    private static final Logger logger = getLogger(Scheduler.class.getName());
+
+    /** default milliseconds an utterance may wait */
+    private static long deadline = 0;
+
+    /** */
+    private static boolean preempt = true;
+
+    /* */
+    static {
+        deadline = Long.parseLong(System.getProperty("vavi.speech.rpc.server.scheduler.deadline", String.valueOf(deadline)));
+        preempt = Boolean.parseBoolean(System.getProperty("vavi.speech.rpc.server.scheduler.preempt", String.valueOf(preempt)));
+    }
+
+    /** in the order of precedence */
+    public enum PriorityClass {
+        ALERT,
+        NORMAL,
+        BACKGROUND;
+
+        /** @param priority {@link SynthesizerProperties#getPriority()} */
+        public static PriorityClass of(int priority) {
+            if (priority > SynthesizerProperties.NORM_PRIORITY) {
+                return ALERT;
+            } else if (priority < SynthesizerProperties.NORM_PRIORITY) {
+                return BACKGROUND;
+            } else {
+                return NORMAL;
+            }
+        }
+
+        /** @return the class of utterances spoken by the engine now */
+        public static PriorityClass of(SynthesizerProperties properties) {
+            return of(properties.getPriority());
+        }
+
+        /** @return true when this goes before the other */
+        public boolean precedes(PriorityClass other) {
+            return ordinal() < other.ordinal();
+        }
+
+        /** metrics label */
+        public String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * @param millis milliseconds the utterance may wait, 0 is the default
+     * @return nano time of the deadline, {@link Long#MAX_VALUE} when none
+     */
+    public static long deadline(long millis) {
+        long m = millis > 0 ? millis : deadline;
+        return m > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(m) : Long.MAX_VALUE;
+    }
+
+    /** @return true when the deadline has passed */
+    static boolean isStale(long deadline) {
+        return deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0;
+    }
+
+    /** @return true when higher classes preempt lower classes */
+    static boolean isPreemptive() {
+        return preempt;
+    }
+
+    /** time an utterance waited before it starts */
+    static void observeWait(PriorityClass c, long nanos) {
+        Metrics.histogram("jsapi2_queue_wait_seconds", "class", c.label()).observeNanos(nanos);
+    }
+
+    /** an utterance dropped by its deadline */
+    static void countStale(PriorityClass c) {
+        Metrics.counter("jsapi2_deadline_dropped_total", "class", c.label()).increment();
+    }
+
+    /** an utterance preempted */
+    static void countPreempted(PriorityClass c) {
+        Metrics.counter("jsapi2_preempted_total", "class", c.label()).increment();
+    }
+
+    /** an utterance in an engine queue */
+    private static final class Entry {
+        final PriorityClass priorityClass;
+        final long deadline;
+        final long enqueued = System.nanoTime();
+        /** 0 until enqueued, guarded by the queue lock */
+        int id;
+        /** guarded by the queue lock */
+        boolean started;
+        /** cancelled as soon as the id is known, guarded by the queue lock */
+        boolean cancel;
+        Entry(PriorityClass priorityClass, long deadline) {
+            this.priorityClass = priorityClass;
+            this.deadline = deadline;
+        }
+    }
+
+    /** utterances of an engine not ended yet in the order of its queue, guarded by {@link #lock} */
+    private final Map<Synthesizer, List<Entry>> queues = new WeakHashMap<>();
+
+    /** */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** an enqueue to an engine */
+    @FunctionalInterface
+    public interface Speak {
+        /** @return speakable id */
+        int speak(SpeakableListener listener) throws SpeakableException, EngineStateException;
+    }
+
+    /**
+     * Enqueues an utterance to the engine played on the server.
+     * lower classes queued before are cancelled when preemptive, the utterance is cancelled
+     * when its turn comes after the deadline.
+     *
+     * @param deadline nano time by {@link #deadline(long)}
+     * @param speak enqueues with the listener
+     * @return speakable id
+     */
+    public int speak(Synthesizer synthesizer, long deadline, Speak speak) throws SpeakableException, EngineStateException {
+        PriorityClass c = PriorityClass.of(synthesizer.getSynthesizerProperties());
+        Entry entry = new Entry(c, deadline);
+        List<Entry> preempted = new ArrayList<>();
+        lock.lock();
+        try {
+            List<Entry> queue = queues.computeIfAbsent(synthesizer, k -> new ArrayList<>());
+            if (preempt) {
+                for (Entry e : queue) {
+                    if (c.precedes(e.priorityClass) && !e.cancel) {
+                        // one still being enqueued is cancelled by its enqueuer
+                        e.cancel = true;
+                        countPreempted(e.priorityClass);
+                        if (e.id != 0) {
+                            preempted.add(e);
+                        }
+                    }
+                }
+            }
+            queue.add(entry);
+        } finally {
+            lock.unlock();
+        }
+        for (Entry e : preempted) {
+logger.log(Level.DEBUG, "preempt: " + e.id + ", " + e.priorityClass + " by " + c);
+            cancel(synthesizer, e.id);
+        }
+        int id;
+        try {
+            id = speak.speak(event -> {
+                int i = event.getId();
+                if (i == SpeakableEvent.TOP_OF_QUEUE || i == SpeakableEvent.SPEAKABLE_STARTED) {
+                    start(synthesizer, entry);
+                } else if (i == SpeakableEvent.SPEAKABLE_ENDED || i == SpeakableEvent.SPEAKABLE_CANCELLED || i == SpeakableEvent.SPEAKABLE_FAILED) {
+                    remove(synthesizer, entry);
+                }
+            });
+        } catch (SpeakableException | RuntimeException e) {
+            remove(synthesizer, entry);
+            throw e;
+        }
+        boolean cancelled;
+        lock.lock();
+        try {
+            entry.id = id;
+            cancelled = entry.cancel;
+        } finally {
+            lock.unlock();
+        }
+        // preempted or stale while being enqueued, events may come before the id is returned
+        if (cancelled) {
+logger.log(Level.DEBUG, "cancel on enqueued: " + id + ", " + c);
+            cancel(synthesizer, id);
+        }
+        return id;
+    }
+
+    /** the entry's turn has come */
+    private void start(Synthesizer synthesizer, Entry entry) {
+        boolean stale = isStale(entry.deadline);
+        int id;
+        lock.lock();
+        try {
+            if (entry.started) {
+                return;
+            }
+            entry.started = true;
+            if (entry.cancel) {
+                // preempted already
+                return;
+            }
+            id = entry.id;
+            if (stale && id == 0) {
+                // cancelled by the enqueuer when the id is known
+                entry.cancel = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        observeWait(entry.priorityClass, System.nanoTime() - entry.enqueued);
+        if (stale) {
+logger.log(Level.DEBUG, "stale: " + id + ", " + entry.priorityClass);
+            countStale(entry.priorityClass);
+            if (id != 0) {
+                cancel(synthesizer, id);
+            }
+        }
+    }
+
+    /** an utterance may have ended meanwhile */
+    private static void cancel(Synthesizer synthesizer, int id) {
+        try {
+            synthesizer.cancel(id);
+        } catch (EngineStateException | IllegalArgumentException e) {
+logger.log(Level.WARNING, "cancel: " + id + ", " + e.getMessage());
+        }
+    }
+
+    /** */
+    private void remove(Synthesizer synthesizer, Entry entry) {
+        lock.lock();
+        try {
+            List<Entry> queue = queues.get(synthesizer);
+            if (queue != null) {
+                queue.remove(entry);
+                if (queue.isEmpty()) {
+                    queues.remove(synthesizer);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return utterances not ended per class of all engines played on the server, key: class label
+     */
+    public Map<String, Integer> getQueued() {
+        Map<String, Integer> queued = new LinkedHashMap<>();
+        for (PriorityClass c : PriorityClass.values()) {
+            queued.put(c.label(), 0);
+        }
+        lock.lock();
+        try {
+            for (List<Entry> queue : queues.values()) {
+                for (Entry e : queue) {
+                    queued.merge(e.priorityClass.label(), 1, Integer::sum);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return queued;
+    }
+}
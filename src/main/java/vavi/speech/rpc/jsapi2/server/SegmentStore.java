@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * SegmentStore. audio kept in append-only segment files over restarts.
+ * <p>
+ * a directory has segment files "segment-nnnnnnnn.dat" and an index file "index.dat".
+ * an index record is a 32 bytes key, an int segment number, a long offset and an int length,
+ * written after its audio. records pointing beyond the end of their segment (e.g. a crash
+ * while appending) or into a removed segment are dropped on open.
+ * <p>
+ * segments are read through memory maps, {@link #transferTo(String, WritableByteChannel)}
+ * lets the kernel copy audio to the response. the oldest segment is removed when there are
+ * more than max segments, its file is closed and deleted after transfers reading it end.
+ * a segment is at most {@link Integer#MAX_VALUE} bytes, as a map is.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+final class SegmentStore implements Closeable {
+
+    private static final Logger logger = getLogger(SegmentStore.class.getName());
+
+    /** bytes of key, segment, offset, length */
+    private static final int RECORD = 32 + 4 + 8 + 4;
+
+    /** */
+    private static final String INDEX = "index.dat";
+
+    /** where an audio is */
+    private record Location(int segment, long offset, int length) {}
+
+    /** an append-only file */
+    private static final class Segment {
+        final Path path;
+        final FileChannel channel;
+        /** read only view, remapped when it does not cover a requested region */
+        MappedByteBuffer map;
+        long size;
+        /** transfers in progress, guarded by the store lock */
+        int readers;
+        /** removed from the store, closed by the last reader */
+        boolean removed;
+        Segment(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+        ByteBuffer slice(long offset, int length) throws IOException {
+            if (map == null || offset + length > map.capacity()) {
+                map = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+            }
+            return map.slice((int) offset, length);
+        }
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+logger.log(Level.DEBUG, "segment removed: " + path);
+        }
+    }
+
+    /** */
+    private final Path directory;
+
+    /** bytes of a segment before the next one is started */
+    private final long segmentBytes;
+
+    /** */
+    private final int maxSegments;
+
+    /** key: segment number, guarded by {@link #lock} */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    /** key: hex key, guarded by {@link #lock} */
+    private final Map<String, Location> index = new HashMap<>();
+
+    /** */
+    private FileChannel indexChannel;
+
+    /** */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Opens the store, entries written before are available.
+     *
+     * @param segmentBytes bytes of a segment before the next one is started, up to {@link Integer#MAX_VALUE}
+     * @param maxSegments segments kept, the oldest one is removed
+     * @throws IllegalArgumentException segmentBytes is out of range
+     */
+    SegmentStore(Path directory, long segmentBytes, int maxSegments) throws IOException {
+        if (segmentBytes <= 0 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segmentBytes: " + segmentBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String name = path.getFileName().toString();
+                if (name.startsWith("segment-") && name.endsWith(".dat")) {
+                    int number = Integer.parseInt(name.substring(8, name.length() - 4));
+                    segments.put(number, new Segment(path));
+                }
+            }
+        }
+        loadIndex();
+logger.log(Level.INFO, "segment store: " + directory + ", " + index.size() + " entries in " + segments.size() + " segments");
+    }
+
+    /** reads records, rewrites the index when some are dropped */
+    private void loadIndex() throws IOException {
+        Path path = directory.resolve(INDEX);
+        int records = 0;
+        if (Files.exists(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                byte[] key = new byte[32];
+                while (map.remaining() >= RECORD) {
+                    map.get(key);
+                    Location location = new Location(map.getInt(), map.getLong(), map.getInt());
+                    records++;
+                    Segment segment = segments.get(location.segment());
+                    long end = location.offset() + location.length();
+                    if (segment != null && end <= segment.size && end <= Integer.MAX_VALUE) {
+                        index.put(HexFormat.of().formatHex(key), location);
+                    }
+                }
+            }
+        }
+        if (records != index.size()) {
+            Path temp = Files.createTempFile(directory, "index", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                for (Map.Entry<String, Location> e : index.entrySet()) {
+                    writeRecord(channel, e.getKey(), e.getValue());
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+logger.log(Level.DEBUG, "index compacted: " + records + " -> " + index.size());
+        }
+        indexChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /** */
+    private static void writeRecord(FileChannel channel, String key, Location location) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD);
+        record.put(HexFormat.of().parseHex(key));
+        record.putInt(location.segment()).putLong(location.offset()).putInt(location.length());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    /** */
+    boolean contains(String key) {
+        lock.lock();
+        try {
+            return index.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return null when not stored */
+    byte[] get(String key) throws IOException {
+        lock.lock();
+        try {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            ByteBuffer buffer = segments.get(location.segment()).slice(location.offset(), location.length());
+            byte[] audio = new byte[location.length()];
+            buffer.get(audio);
+            return audio;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies the audio to the target by the kernel if it can.
+     *
+     * @return false when not stored
+     */
+    boolean transferTo(String key, WritableByteChannel target) throws IOException {
+        Location location;
+        Segment segment;
+        lock.lock();
+        try {
+            location = index.get(key);
+            if (location == null) {
+                return false;
+            }
+            segment = segments.get(location.segment());
+            // the segment is not closed while transferring
+            segment.readers++;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            long position = location.offset();
+            long end = position + location.length();
+            while (position < end) {
+                position += segment.channel.transferTo(position, end - position, target);
+            }
+            return true;
+        } finally {
+            lock.lock();
+            try {
+                if (--segment.readers == 0 && segment.removed) {
+                    segment.delete();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** appends the audio unless stored already */
+    void put(String key, byte[] audio) throws IOException {
+        lock.lock();
+        try {
+            if (index.containsKey(key)) {
+                return;
+            }
+            Segment segment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+            if (segment == null || (segment.size > 0 && segment.size + audio.length > segmentBytes)) {
+                segment = newSegment();
+            }
+            long offset = segment.size;
+            ByteBuffer buffer = ByteBuffer.wrap(audio);
+            long position = offset;
+            while (buffer.hasRemaining()) {
+                position += segment.channel.write(buffer, position);
+            }
+            segment.size = position;
+            // an index record never points to audio not written yet
+            segment.channel.force(false);
+            Location location = new Location(segments.lastKey(), offset, audio.length);
+            writeRecord(indexChannel, key, location);
+            index.put(key, location);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** starts the next segment, removes the oldest one over the max */
+    private Segment newSegment() throws IOException {
+        int number = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        Segment segment = new Segment(directory.resolve(String.format("segment-%08d.dat", number)));
+        segments.put(number, segment);
+        while (segments.size() > maxSegments) {
+            Map.Entry<Integer, Segment> oldest = segments.pollFirstEntry();
+            index.values().removeIf(l -> l.segment() == oldest.getKey());
+            Segment removed = oldest.getValue();
+            removed.removed = true;
+            if (removed.readers == 0) {
+                removed.delete();
+            }
+        }
+        return segment;
+    }
+
+    /** entries */
+    int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            segments.clear();
+            index.clear();
+            if (indexChannel != null) {
+                indexChannel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
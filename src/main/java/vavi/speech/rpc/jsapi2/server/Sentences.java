@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+
+/**
+ * Sentences. splits a document into utterances.
+ * <p>
+ * a sentence ends at "。" (kept) or a new line (dropped), blank sentences are skipped.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+final class Sentences {
+
+    /** */
+    private Sentences() {}
+
+    /** @return sentences in order */
+    static List<String> split(String document) {
+        List<String> sentences = new ArrayList<>();
+        if (document != null) {
+            try {
+                split(new StringReader(document), sentences::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return sentences;
+    }
+
+    /**
+     * Splits incrementally, a sentence is given as soon as its end is read.
+     *
+     * @param sentences receives sentences in order
+     */
+    static void split(Reader reader, Consumer<String> sentences) throws IOException {
+        StringBuilder sentence = new StringBuilder();
+        char[] buffer = new char[1024];
+        int n;
+        while ((n = reader.read(buffer)) != -1) {
+            for (int i = 0; i < n; i++) {
+                char c = buffer[i];
+                if (c == '\n' || c == '\r') {
+                    flush(sentence, sentences);
+                } else {
+                    sentence.append(c);
+                    if (c == '。') {
+                        flush(sentence, sentences);
+                    }
+                }
+            }
+        }
+        flush(sentence, sentences);
+    }
+
+    /** */
+    private static void flush(StringBuilder sentence, Consumer<String> sentences) {
+        String s = sentence.toString().strip();
+        if (!s.isEmpty()) {
+            sentences.accept(s);
+        }
+        sentence.setLength(0);
+    }
+}
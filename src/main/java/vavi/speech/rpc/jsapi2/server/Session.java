@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import javax.speech.EnginePropertyListener;
+import javax.speech.synthesis.SpeakableListener;
+import javax.speech.synthesis.Synthesizer;
+import javax.speech.synthesis.SynthesizerListener;
+
+import vavi.speech.rpc.jsapi2.client.RpcClient.SpeechEventDTO;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Session. a client's own engine on the server.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.server.audioLocator ... media locator of audio sent over the wire,
+ *  default "playback://audio?rate=16000&amp;bits=16&amp;channels=1&amp;endian=little&amp;signed=true"</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class Session {
+
+    private static final Logger logger = getLogger(Session.class.getName());
+
+    /** media locator for audio sent over the wire */
+    private static String audioLocator = "playback://audio?rate=16000&bits=16&channels=1&endian=little&signed=true";
+
+    /** of {@link #audioLocator}, for real-time factors */
+    private static double bytesPerSecond;
+
+    /* */
+    static {
+        audioLocator = System.getProperty("vavi.speech.rpc.server.audioLocator", audioLocator);
+        bytesPerSecond = bytesPerSecond(audioLocator);
+    }
+
+    /** @return 0 when unknown */
+    private static double bytesPerSecond(String mediaLocator) {
+        Map<String, String> params = new HashMap<>();
+        int p = mediaLocator.indexOf('?');
+        if (p >= 0) {
+            for (String pair : mediaLocator.substring(p + 1).split("&")) {
+                String[] kv = pair.split("=", 2);
+                if (kv.length == 2) {
+                    params.put(kv[0], kv[1]);
+                }
+            }
+        }
+        try {
+            return Double.parseDouble(params.getOrDefault("rate", "0")) *
+                    Integer.parseInt(params.getOrDefault("bits", "16")) / 8 *
+                    Integer.parseInt(params.getOrDefault("channels", "1"));
+        } catch (NumberFormatException e) {
+logger.log(Level.WARNING, "unknown audio format: " + mediaLocator);
+            return 0;
+        }
+    }
+
+    /** session handle */
+    private final String id = UUID.randomUUID().toString();
+
+    /** */
+    private final String modeName;
+
+    /** owned by this session only */
+    private final Synthesizer synthesizer;
+
+    /** */
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    /** shared by sessions */
+    private final AudioCache cache;
+
+    /** engines synthesizing audio sent over the wire, shared by sessions */
+    private final EnginePool pool;
+
+    /** receives events of this session */
+    public interface Subscriber {
+        /** */
+        void onEvent(SpeechEventDTO event);
+        /** the session is closed */
+        default void onClose() {}
+    }
+
+    /** */
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    /** */
+    private final SpeakableListener speakableListener = e -> publish(new SpeechEventDTO(e));
+
+    /** */
+    private final SynthesizerListener synthesizerListener = e -> publish(new SpeechEventDTO(e));
+
+    /** */
+    private final EnginePropertyListener propertyListener = e -> publish(new SpeechEventDTO(e));
+
+    /** */
+    Session(String modeName, Synthesizer synthesizer, AudioCache cache, EnginePool pool) {
+        this.modeName = modeName;
+        this.synthesizer = synthesizer;
+        this.cache = cache;
+        this.pool = pool;
+        synthesizer.addSpeakableListener(speakableListener);
+        synthesizer.addSynthesizerListener(synthesizerListener);
+        synthesizer.getSynthesizerProperties().addEnginePropertyListener(propertyListener);
+    }
+
+    /** */
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /** */
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /** */
+    private void publish(SpeechEventDTO event) {
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.onEvent(event);
+            } catch (RuntimeException e) {
+logger.log(Level.DEBUG, "unsubscribe: " + e);
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    /** tells subscribers to drop their snapshot of properties, for engines which do not fire property events */
+    void propertiesChanged() {
+        SpeechEventDTO event = new SpeechEventDTO();
+        event.type = SpeechEventDTO.PROPERTIES;
+        publish(event);
+    }
+
+    /** the engine is given back, subscribers are notified */
+    void detach() {
+        synthesizer.removeSpeakableListener(speakableListener);
+        synthesizer.removeSynthesizerListener(synthesizerListener);
+        synthesizer.getSynthesizerProperties().removeEnginePropertyListener(propertyListener);
+        subscribers.forEach(Subscriber::onClose);
+        subscribers.clear();
+    }
+
+    /** session handle */
+    public String getId() {
+        return id;
+    }
+
+    /** */
+    public String getModeName() {
+        return modeName;
+    }
+
+    /** */
+    public Synthesizer getSynthesizer() {
+        return synthesizer;
+    }
+
+    /** media locator describing the format of {@link #speakTo(String, long, OutputStream)} */
+    public static String getAudioLocator() {
+        return audioLocator;
+    }
+
+    /** */
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    /** */
+    void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Synthesizes the text and writes the audio into the stream as the engine produces it.
+     * blocks until the speakable ends.
+     * audio synthesized before with the same voice and properties is written from the cache
+     * without the engine.
+     * the text is synthesized by an engine of the pool, texts of this session are synthesized in order.
+     *
+     * @param deadline nano time by {@link Scheduler#deadline(long)}
+     */
+    public void speakTo(String text, long deadline, OutputStream out) throws IOException {
+        String key = cache != null && cache.isEnabled() ?
+                AudioCache.key(modeName, audioLocator, synthesizer.getSynthesizerProperties(), text) : null;
+        if (key != null && cache.writeTo(key, out)) {
+logger.log(Level.DEBUG, "cache hit: " + key);
+            return;
+        }
+        EnginePool.Rendered rendered = pool.render(modeName, id, synthesizer.getSynthesizerProperties(), text, deadline,
+                out, key != null ? (int) Math.min(cache.getMaxBytes(), Integer.MAX_VALUE) : 0);
+        observe(rendered);
+        // a cancelled one is not the whole audio
+        if (rendered.completed() && rendered.audio() != null) {
+            cache.put(key, rendered.audio());
+        }
+    }
+
+    /**
+     * Synthesizes the text into the file without playback, faster than real time.
+     * the text is split into sentences, sentences are synthesized in parallel by
+     * engines of the pool and written in order as raw pcm of {@link #getAudioLocator()}.
+     *
+     * @param deadline nano time by {@link Scheduler#deadline(long)}, the first sentence must start until then
+     * @return bytes written
+     */
+    public long renderTo(String text, long deadline, Path file) throws IOException {
+        List<String> sentences = Sentences.split(text);
+        // sentences ahead are bounded not to take over the pool from other sessions
+        int window = pool.getSize(modeName);
+        Deque<CompletableFuture<byte[]>> parts = new ArrayDeque<>();
+        long length = 0;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int next = 0;
+            while (next < sentences.size() || !parts.isEmpty()) {
+                while (next < sentences.size() && parts.size() < window) {
+                    parts.addLast(renderAsync(sentences.get(next), id + "#" + next, next == 0 ? deadline : Long.MAX_VALUE));
+                    next++;
+                }
+                byte[] audio = parts.removeFirst().get();
+                out.write(audio);
+                length += audio.length;
+            }
+            return length;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            parts.forEach(part -> part.cancel(false));
+        }
+    }
+
+    /** @return audio of the sentence from the cache or an engine of the pool */
+    private CompletableFuture<byte[]> renderAsync(String sentence, String lane, long deadline) throws IOException {
+        String key = cache != null && cache.isEnabled() ?
+                AudioCache.key(modeName, audioLocator, synthesizer.getSynthesizerProperties(), sentence) : null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (key != null && cache.writeTo(key, out)) {
+            return CompletableFuture.completedFuture(out.toByteArray());
+        }
+        CompletableFuture<EnginePool.Rendered> job = pool.submit(modeName, lane, synthesizer.getSynthesizerProperties(), sentence, deadline, out, 0);
+        CompletableFuture<byte[]> audio = job.thenApply(rendered -> {
+            if (!rendered.completed()) {
+                throw new CancellationException("cancelled: " + sentence);
+            }
+            observe(rendered);
+            byte[] bytes = out.toByteArray();
+            if (key != null) {
+                cache.put(key, bytes);
+            }
+            return bytes;
+        });
+        // cancelling the audio drops the utterance
+        audio.exceptionally(t -> {
+            job.cancel(false);
+            return null;
+        });
+        return audio;
+    }
+
+    /** time to first audio and real-time factor of a synthesis */
+    private void observe(EnginePool.Rendered rendered) {
+        long elapsed = System.nanoTime() - rendered.start();
+        if (rendered.firstWrite() != 0) {
+            Metrics.histogram("jsapi2_time_to_first_audio_seconds", "mode", modeName).observeNanos(rendered.firstWrite() - rendered.start());
+        }
+        if (bytesPerSecond > 0 && rendered.written() > 0) {
+            double seconds = rendered.written() / bytesPerSecond;
+            Metrics.histogram("jsapi2_real_time_factor", Metrics.RATIOS, "mode", modeName).observe(elapsed / 1e9 / seconds);
+        }
+    }
+}
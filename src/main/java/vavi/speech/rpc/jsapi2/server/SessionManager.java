@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.Closeable;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.speech.synthesis.Synthesizer;
+
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.ServiceUnavailableException;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * SessionManager.
+ * <p>
+ * each session owns a synthesizer, engines released by closed sessions are
+ * kept as spares and reused by the next session of the same mode.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.server.sessionTimeout ... idle seconds before a session is closed, default 1800</li>
+ *  <li>vavi.speech.rpc.server.maxSpares ... max number of spare engines per mode, default 2</li>
+ *  <li>vavi.speech.rpc.server.maxSessions ... max number of sessions holding engines, more are rejected, default 64</li>
+ *  <li>vavi.speech.rpc.server.releaseTimeout ... milliseconds queued speakables of a closed session may play,
+ *      the rest are cancelled, default 30000</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class SessionManager implements Closeable {
+
+    private static final Logger logger = getLogger(SessionManager.class.getName());
+
+    /** idle timeout in seconds */
+    private static long sessionTimeout = 1800;
+
+    /** max number of spare engines per mode */
+    private static int maxSpares = 2;
+
+    /** max number of sessions holding engines */
+    private static int maxSessions = 64;
+
+    /** milliseconds queued speakables of a closed session may play */
+    private static long releaseTimeout = 30000;
+
+    /* */
+    static {
+        sessionTimeout = Long.parseLong(System.getProperty("vavi.speech.rpc.server.sessionTimeout", String.valueOf(sessionTimeout)));
+        maxSpares = Integer.parseInt(System.getProperty("vavi.speech.rpc.server.maxSpares", String.valueOf(maxSpares)));
+        maxSessions = Integer.parseInt(System.getProperty("vavi.speech.rpc.server.maxSessions", String.valueOf(maxSessions)));
+        releaseTimeout = Long.parseLong(System.getProperty("vavi.speech.rpc.server.releaseTimeout", String.valueOf(releaseTimeout)));
+    }
+
+    /** key: session id */
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    /** allocated engines not owned by any session. key: mode name */
+    private final Map<String, Deque<Synthesizer>> spares = new ConcurrentHashMap<>();
+
+    /** sessions opened and not released yet, the engines they hold */
+    private final AtomicInteger holding = new AtomicInteger();
+
+    /** */
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "jsapi2-session-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** releases engines after their queues become empty, nothing blocks on it */
+    private final ExecutorService releaser = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "jsapi2-session-releaser");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** synthesized audio shared by sessions */
+    private final AudioCache cache;
+
+    /** engines synthesizing audio sent over the wire, shared by sessions */
+    private final EnginePool pool;
+
+    /** synthesizes texts played on the server ahead by {@link #pool} */
+    private final Lookahead lookahead;
+
+    /** priority classes and deadlines of texts played on the server */
+    private final Scheduler scheduler = new Scheduler();
+
+    /** with a cache and a pool configured by system properties */
+    public SessionManager() {
+        this(new AudioCache());
+    }
+
+    /** with a pool configured by system properties */
+    public SessionManager(AudioCache cache) {
+        this(cache, new EnginePool());
+    }
+
+    /** */
+    public SessionManager(AudioCache cache, EnginePool pool) {
+        this.cache = cache;
+        this.pool = pool;
+        this.lookahead = new Lookahead(pool);
+        long period = Math.max(1, sessionTimeout / 4);
+        reaper.scheduleWithFixedDelay(this::closeIdle, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Opens a new session with an allocated engine.
+     *
+     * @param modeName class name of {@link javax.speech.synthesis.SynthesizerMode}
+     * @throws ServiceUnavailableException when {@link #maxSessions} sessions hold engines
+     */
+    public Session open(String modeName) {
+        if (holding.incrementAndGet() > maxSessions) {
+            holding.decrementAndGet();
+            throw new ServiceUnavailableException("too many sessions: " + maxSessions);
+        }
+        try {
+            Synthesizer synthesizer = null;
+            Deque<Synthesizer> deque = spares.get(modeName);
+            if (deque != null) {
+                synthesizer = deque.pollFirst();
+            }
+            if (synthesizer == null) {
+                synthesizer = EngineRegistry.newSynthesizer(modeName);
+            }
+            Session session = new Session(modeName, synthesizer, cache, pool);
+            sessions.put(session.getId(), session);
+logger.log(Level.DEBUG, "open: " + session.getId() + ", " + modeName);
+            return session;
+        } catch (RuntimeException e) {
+            holding.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * @param id session handle
+     * @throws NotFoundException when the session does not exist
+     */
+    public Session get(String id) {
+        Session session = sessions.get(id);
+        if (session == null) {
+            throw new NotFoundException("no such session: " + id);
+        }
+        session.touch();
+        return session;
+    }
+
+    /**
+     * Releases the session's engine after its queue becomes empty, speakables still queued
+     * after {@link #releaseTimeout} are cancelled.
+     */
+    public void close(String id) {
+        Session session = sessions.remove(id);
+        if (session != null) {
+logger.log(Level.DEBUG, "close: " + id);
+            session.detach();
+            Synthesizer synthesizer = session.getSynthesizer();
+            EngineStateWaiter.await(synthesizer, Synthesizer.QUEUE_EMPTY, releaseTimeout)
+                    .whenCompleteAsync((state, t) -> release(session), releaser);
+        }
+    }
+
+    /** kept as a spare when the queue is empty, otherwise deallocated */
+    private void release(Session session) {
+        Synthesizer synthesizer = session.getSynthesizer();
+        try {
+            if (synthesizer.testEngineState(Synthesizer.QUEUE_EMPTY)) {
+                synthesizer.getSynthesizerProperties().reset();
+                Deque<Synthesizer> deque = spares.computeIfAbsent(session.getModeName(), k -> new ConcurrentLinkedDeque<>());
+                if (deque.size() < maxSpares) {
+                    deque.offerFirst(synthesizer);
+                    return;
+                }
+            } else {
+logger.log(Level.DEBUG, "cancel queued: " + session.getId());
+                synthesizer.cancelAll();
+            }
+        } catch (Exception e) {
+logger.log(Level.WARNING, e.getMessage(), e);
+        } finally {
+            lookahead.remove(synthesizer);
+            holding.decrementAndGet();
+        }
+        deallocate(synthesizer);
+    }
+
+    /** */
+    private static void deallocate(Synthesizer synthesizer) {
+        try {
+            synthesizer.deallocate();
+        } catch (Exception e) {
+logger.log(Level.WARNING, e.getMessage(), e);
+        }
+    }
+
+    /** */
+    public AudioCache getCache() {
+        return cache;
+    }
+
+    /** */
+    public EnginePool getPool() {
+        return pool;
+    }
+
+    /** */
+    public Lookahead getLookahead() {
+        return lookahead;
+    }
+
+    /** */
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /** closes sessions not accessed for {@link #sessionTimeout} */
+    private void closeIdle() {
+        long limit = System.currentTimeMillis() - sessionTimeout * 1000;
+        sessions.values().stream()
+                .filter(s -> s.getLastAccess() < limit)
+                .map(Session::getId)
+                .forEach(this::close);
+    }
+
+    @Override
+    public void close() {
+        reaper.shutdownNow();
+        releaser.shutdownNow();
+        sessions.values().forEach(s -> {
+            s.detach();
+            deallocate(s.getSynthesizer());
+        });
+        sessions.clear();
+        spares.values().forEach(d -> d.forEach(SessionManager::deallocate));
+        spares.clear();
+        lookahead.close();
+        pool.close();
+        cache.close();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * TapOutputStream. an engine's audio output connected to one response at a time.
+ * <p>
+ * written bytes are flushed through at once, nothing is buffered here.
+ * bytes written while disconnected are discarded.
+ * a copy of written bytes is kept when capturing, given up when it exceeds the limit.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class TapOutputStream extends OutputStream {
+
+    /** */
+    private volatile OutputStream out;
+
+    /** the connected stream failed, e.g. the client has gone */
+    private volatile IOException failure;
+
+    /** copy of written bytes, null when not capturing or given up */
+    private volatile ByteArrayOutputStream capture;
+
+    /** */
+    private volatile long captureLimit;
+
+    /** {@link System#nanoTime()} of the first write since connected, 0 if none */
+    private volatile long firstWrite;
+
+    /** bytes written since connected */
+    private volatile long written;
+
+    /** */
+    void connect(OutputStream out) {
+        connect(out, 0);
+    }
+
+    /**
+     * @param captureLimit bytes to keep a copy of, 0 means no copy
+     */
+    void connect(OutputStream out, long captureLimit) {
+        this.failure = null;
+        this.capture = captureLimit > 0 ? new ByteArrayOutputStream() : null;
+        this.captureLimit = captureLimit;
+        this.firstWrite = 0;
+        this.written = 0;
+        this.out = out;
+    }
+
+    /** */
+    void disconnect() {
+        this.out = null;
+    }
+
+    /** @return {@link System#nanoTime()} of the first write since connected, 0 if nothing is written */
+    long getFirstWrite() {
+        return firstWrite;
+    }
+
+    /** @return bytes written since connected */
+    long getWritten() {
+        return written;
+    }
+
+    /** @return the copy of bytes written since connected, null if not captured */
+    byte[] getCaptured() {
+        ByteArrayOutputStream capture = this.capture;
+        return capture != null ? capture.toByteArray() : null;
+    }
+
+    /** @return the error occurred on the connected stream, null if none */
+    IOException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        OutputStream out = this.out;
+        if (out != null) {
+            if (firstWrite == 0) {
+                firstWrite = System.nanoTime();
+            }
+            written += len;
+            try {
+                out.write(b, off, len);
+                out.flush();
+                ByteArrayOutputStream capture = this.capture;
+                if (capture != null) {
+                    if (capture.size() + len > captureLimit) {
+                        this.capture = null;
+                    } else {
+                        capture.write(b, off, len);
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+                this.out = null;
+            }
+        }
+    }
+
+    /** the engine closing its output must not close the response */
+    @Override
+    public void close() {
+    }
+}
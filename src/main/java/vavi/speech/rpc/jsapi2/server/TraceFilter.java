@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.Locale;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.ext.Provider;
+import vavi.speech.rpc.jsapi2.client.RpcCall;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * TraceFilter. logs the trace id sent by the client and answers the server's own time.
+ * <p>
+ * the trace id is echoed as {@link RpcCall#HEADER_TRACE_ID},
+ * the time until the response headers as {@link RpcCall#HEADER_SERVER_TIMING} "app;dur=milliseconds".
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@Provider
+public class TraceFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final Logger logger = getLogger(TraceFilter.class.getName());
+
+    /** request property */
+    private static final String START = TraceFilter.class.getName() + ".start";
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        request.setProperty(START, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object start = request.getProperty(START);
+        if (start == null) {
+            return;
+        }
+        String timing = serverTiming(System.nanoTime() - (Long) start);
+        String traceId = request.getHeaderString(RpcCall.HEADER_TRACE_ID);
+        if (traceId != null) {
+            response.getHeaders().putSingle(RpcCall.HEADER_TRACE_ID, traceId);
+logger.log(Level.DEBUG, "trace: " + traceId + " " + request.getMethod() + " " + request.getUriInfo().getPath() + " " + response.getStatus() + " " + timing);
+        }
+        response.getHeaders().putSingle(RpcCall.HEADER_SERVER_TIMING, timing);
+    }
+
+    /** @return value of {@link RpcCall#HEADER_SERVER_TIMING} */
+    static String serverTiming(long nanos) {
+        return String.format(Locale.ROOT, "app;dur=%.1f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.speech.EngineList;
+import javax.speech.EngineManager;
+import javax.speech.EngineMode;
+import javax.speech.SpeechLocale;
+import javax.speech.synthesis.SynthesizerMode;
+import javax.speech.synthesis.Voice;
+
+import vavi.speech.rpc.jsapi2.client.RpcClient.VoiceDTO;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * VoiceCatalog. voices of all configured engines indexed by mode, locale, name, gender and age.
+ * <p>
+ * built once at startup from the engine list factories without allocating engines,
+ * a mode requested later by getVoices is added. a query narrows candidates by the indices
+ * and answers the voices which {@link Voice#match(Voice)} the required one, as same as
+ * engine list factories do.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.server.catalog ... comma separated mode class names catalogued at startup,
+ *      default none</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class VoiceCatalog {
+
+    private static final Logger logger = getLogger(VoiceCatalog.class.getName());
+
+    /** mode class names */
+    private static String catalog = "";
+
+    /* */
+    static {
+        catalog = System.getProperty("vavi.speech.rpc.server.catalog", catalog);
+    }
+
+    /** a catalogued voice */
+    private record Entry(String modeName, Voice voice, VoiceDTO dto) {}
+
+    /** immutable, replaced when a mode is added */
+    private static final class Index {
+        final List<Entry> entries = new ArrayList<>();
+        final Map<String, BitSet> byMode = new HashMap<>();
+        /** key: lower case language */
+        final Map<String, BitSet> byLanguage = new HashMap<>();
+        final Map<String, BitSet> byName = new HashMap<>();
+        final Map<Integer, BitSet> byGender = new HashMap<>();
+        final Map<Integer, BitSet> byAge = new HashMap<>();
+
+        Index(List<Entry> entries) {
+            for (Entry entry : entries) {
+                int i = this.entries.size();
+                this.entries.add(entry);
+                Voice voice = entry.voice;
+                byMode.computeIfAbsent(entry.modeName, k -> new BitSet()).set(i);
+                if (voice.getSpeechLocale() != null) {
+                    byLanguage.computeIfAbsent(language(voice.getSpeechLocale()), k -> new BitSet()).set(i);
+                }
+                if (voice.getName() != null) {
+                    byName.computeIfAbsent(voice.getName(), k -> new BitSet()).set(i);
+                }
+                byGender.computeIfAbsent(voice.getGender(), k -> new BitSet()).set(i);
+                byAge.computeIfAbsent(voice.getAge(), k -> new BitSet()).set(i);
+            }
+        }
+    }
+
+    /** */
+    private volatile Index index = new Index(List.of());
+
+    /** serializes additions */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** catalogues the modes of the system property */
+    public VoiceCatalog() {
+        this(Arrays.stream(catalog.split(",")).map(String::strip).filter(s -> !s.isEmpty()).toList());
+    }
+
+    /**
+     * @param modeNames class names of {@link SynthesizerMode}, a mode failed to list is skipped
+     */
+    public VoiceCatalog(List<String> modeNames) {
+        long start = System.nanoTime();
+        List<Entry> entries = new ArrayList<>();
+        for (String modeName : modeNames) {
+            try {
+                Voice[] voices = listVoices(modeName);
+                if (voices == null) {
+logger.log(Level.WARNING, "no voices listed, catalogued when requested: " + modeName);
+                    continue;
+                }
+                Arrays.stream(voices).forEach(voice -> entries.add(entry(modeName, voice)));
+            } catch (Exception e) {
+logger.log(Level.WARNING, "not catalogued: " + modeName + ", " + e.getMessage(), e);
+            }
+        }
+        index = new Index(entries);
+logger.log(Level.INFO, "catalog: " + entries.size() + " voices of " + index.byMode.size() + " modes in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Lists voices by the engine list factories as {@link EngineManager#createEngine} finds the engine.
+     *
+     * @return null when the factory lists no voices
+     */
+    private static Voice[] listVoices(String modeName) throws ReflectiveOperationException {
+        @SuppressWarnings("unchecked")
+        Class<SynthesizerMode> clazz = (Class<SynthesizerMode>) Class.forName(modeName);
+        EngineList engines = EngineManager.availableEngines(clazz.getDeclaredConstructor().newInstance());
+        List<Voice> voices = null;
+        for (Enumeration<?> e = engines.elements(); e.hasMoreElements(); ) {
+            EngineMode mode = (EngineMode) e.nextElement();
+            if (mode instanceof SynthesizerMode synthesizerMode && synthesizerMode.getVoices() != null) {
+                if (voices == null) {
+                    voices = new ArrayList<>();
+                }
+                voices.addAll(List.of(synthesizerMode.getVoices()));
+            }
+        }
+        return voices != null ? voices.toArray(Voice[]::new) : null;
+    }
+
+    /** */
+    private static Entry entry(String modeName, Voice voice) {
+        VoiceDTO dto = new VoiceDTO(voice);
+        dto.modeName = modeName;
+        return new Entry(modeName, voice, dto);
+    }
+
+    /** */
+    private static String language(SpeechLocale locale) {
+        return locale.getLanguage() != null ? locale.getLanguage().toLowerCase(Locale.ROOT) : "";
+    }
+
+    /** @return true when voices of the mode are catalogued */
+    public boolean contains(String modeName) {
+        return index.byMode.containsKey(modeName);
+    }
+
+    /**
+     * Adds voices of a mode not catalogued yet.
+     *
+     * @param modeName class name of {@link SynthesizerMode}
+     */
+    public void add(String modeName, Voice[] voices) {
+        lock.lock();
+        try {
+            if (contains(modeName)) {
+                return;
+            }
+            List<Entry> entries = new ArrayList<>(index.entries);
+            Arrays.stream(voices).forEach(voice -> entries.add(entry(modeName, voice)));
+            index = new Index(entries);
+logger.log(Level.DEBUG, "catalog: added " + voices.length + " voices of " + modeName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return voices of the mode, null when not catalogued
+     */
+    public VoiceDTO[] getVoices(String modeName) {
+        Index index = this.index;
+        BitSet bits = index.byMode.get(modeName);
+        if (bits == null) {
+            return null;
+        }
+        return bits.stream().mapToObj(i -> index.entries.get(i).dto).toArray(VoiceDTO[]::new);
+    }
+
+    /**
+     * Finds voices, null parameters match all.
+     *
+     * @param modeName class name of {@link SynthesizerMode}
+     * @param locale required locale
+     * @param name required voice name
+     * @param gender required gender, {@link Voice#GENDER_DONT_CARE} matches all
+     * @param age required age, {@link Voice#AGE_DONT_CARE} matches all
+     * @param variant required variant, {@link Voice#VARIANT_DONT_CARE} matches all
+     * @return matched voices in the catalogued order, {@link VoiceDTO#modeName} is set
+     */
+    public VoiceDTO[] match(String modeName, SpeechLocale locale, String name, Integer gender, Integer age, Integer variant) {
+        Index index = this.index;
+        BitSet candidates = new BitSet();
+        candidates.set(0, index.entries.size());
+        if (modeName != null) {
+            and(candidates, index.byMode.get(modeName));
+        }
+        if (locale != null && !language(locale).isEmpty()) {
+            and(candidates, index.byLanguage.get(language(locale)));
+        }
+        if (name != null) {
+            and(candidates, index.byName.get(name));
+        }
+        int g = gender != null ? gender : Voice.GENDER_DONT_CARE;
+        if (g != Voice.GENDER_DONT_CARE) {
+            and(candidates, union(index.byGender, g));
+        }
+        int a = age != null ? age : Voice.AGE_DONT_CARE;
+        if (a != Voice.AGE_DONT_CARE) {
+            and(candidates, union(index.byAge, a));
+        }
+        // the indices narrow, the voice decides as engine list factories do
+        Voice require = new Voice(locale, name, g, a, variant != null ? variant : Voice.VARIANT_DONT_CARE);
+        return candidates.stream()
+                .mapToObj(index.entries::get)
+                .filter(entry -> entry.voice.match(require))
+                .map(Entry::dto)
+                .toArray(VoiceDTO[]::new);
+    }
+
+    /** @param bits null means none */
+    private static void and(BitSet candidates, BitSet bits) {
+        if (bits == null) {
+            candidates.clear();
+        } else {
+            candidates.and(bits);
+        }
+    }
+
+    /** @return voices whose value may match the required one, gender and age are bit flags */
+    private static BitSet union(Map<Integer, BitSet> index, int required) {
+        BitSet bits = new BitSet();
+        index.forEach((value, set) -> {
+            if (value == required || (value & required) != 0) {
+                bits.or(set);
+            }
+        });
+        return bits;
+    }
+
+    /**
+     * @param locale "language[_country[_variant]]"
+     * @return null when locale is null or empty
+     */
+    public static SpeechLocale toSpeechLocale(String locale) {
+        if (locale == null || locale.isEmpty()) {
+            return null;
+        }
+        String[] parts = locale.split("_", 3);
+        return switch (parts.length) {
+            case 1 -> new SpeechLocale(parts[0]);
+            case 2 -> new SpeechLocale(parts[0], parts[1]);
+            default -> new SpeechLocale(parts[0], parts[1], parts[2]);
+        };
+    }
+}
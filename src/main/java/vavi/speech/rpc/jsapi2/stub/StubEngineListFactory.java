@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.stub;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.speech.EngineList;
+import javax.speech.EngineMode;
+import javax.speech.spi.EngineListFactory;
+import javax.speech.synthesis.SynthesizerMode;
+import javax.speech.synthesis.Voice;
+
+
+/**
+ * Factory for the stub engine.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class StubEngineListFactory implements EngineListFactory {
+
+    @Override
+    public EngineList createEngineList(EngineMode require) {
+        if (require instanceof StubSynthesizerMode synthesizerMode) {
+            List<Voice> voices = new ArrayList<>();
+            for (Voice availableVoice : StubSynthesizerMode.VOICES) {
+                if (synthesizerMode.getVoices() == null) {
+                    voices.add(availableVoice);
+                } else {
+                    for (Voice requiredVoice : synthesizerMode.getVoices()) {
+                        if (availableVoice.match(requiredVoice)) {
+                            voices.add(availableVoice);
+                        }
+                    }
+                }
+            }
+            SynthesizerMode[] features = new SynthesizerMode[] {
+                new StubSynthesizerMode("Stub",
+                                        synthesizerMode.getModeName(),
+                                        synthesizerMode.getRunning(),
+                                        synthesizerMode.getSupportsLetterToSound(),
+                                        synthesizerMode.getMarkupSupport(),
+                                        voices.toArray(Voice[]::new))
+            };
+            return new EngineList(features);
+        }
+
+        return null;
+    }
+}
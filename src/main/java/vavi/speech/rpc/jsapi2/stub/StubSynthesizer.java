@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.stub;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.speech.AudioException;
+import javax.speech.AudioManager;
+import javax.speech.AudioSegment;
+import javax.speech.EngineEvent;
+import javax.speech.EngineException;
+import javax.speech.EngineStateException;
+import javax.speech.synthesis.Speakable;
+
+import org.jvoicexml.jsapi2.BaseAudioSegment;
+import org.jvoicexml.jsapi2.BaseEngineProperties;
+import org.jvoicexml.jsapi2.synthesis.BaseSynthesizer;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * A stub {@link javax.speech.synthesis.Synthesizer}, synthesizes silence.
+ * <p>
+ * needs no native library, no network and no audio device, audio is discarded
+ * unless a media locator with a stream is set. the length of the silence is
+ * proportional to the text, the same text always gives the same audio.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.stub.latency ... milliseconds before the first audio, default 0</li>
+ *  <li>vavi.speech.rpc.stub.realTimeFactor ... synthesis time / audio duration, 0 is as fast as possible, default 0</li>
+ *  <li>vavi.speech.rpc.stub.millisPerChar ... milliseconds of audio per a character, default 10</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class StubSynthesizer extends BaseSynthesizer {
+
+    private static final Logger logger = getLogger(StubSynthesizer.class.getName());
+
+    /** the stub's own format */
+    private static final AudioFormat format = new AudioFormat(16000, 16, 1, true, false);
+
+    /** media locator of the default sink */
+    private static final String locator = "playback://audio?rate=16000&bits=16&channels=1&endian=little&signed=true";
+
+    /** length of audio per a character */
+    private static int millisPerChar = 10;
+
+    /** milliseconds before the first audio */
+    private static long latency = 0;
+
+    /** synthesis time / audio duration, 0 is as fast as possible */
+    private static double realTimeFactor = 0;
+
+    /** audio is paced by this unit */
+    private static final int chunkMillis = 20;
+
+    /* */
+    static {
+        millisPerChar = Integer.parseInt(System.getProperty("vavi.speech.rpc.stub.millisPerChar", String.valueOf(millisPerChar)));
+        latency = Long.parseLong(System.getProperty("vavi.speech.rpc.stub.latency", String.valueOf(latency)));
+        realTimeFactor = Double.parseDouble(System.getProperty("vavi.speech.rpc.stub.realTimeFactor", String.valueOf(realTimeFactor)));
+    }
+
+    /**
+     * Constructs a new synthesizer object.
+     *
+     * @param mode the synthesizer mode
+     */
+    StubSynthesizer(StubSynthesizerMode mode) {
+        super(mode);
+        try {
+            // no audio device is needed, overridden by the one set before allocation
+            getAudioManager().setMediaLocator(locator, OutputStream.nullOutputStream());
+        } catch (AudioException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected void handleAllocate() throws EngineStateException, EngineException, AudioException, SecurityException {
+        long[] states = setEngineState(CLEAR_ALL_STATE, ALLOCATED);
+        postEngineEvent(states[0], states[1], EngineEvent.ENGINE_ALLOCATED);
+    }
+
+    @Override
+    public boolean handleCancel() {
+        return false;
+    }
+
+    @Override
+    protected boolean handleCancel(int id) {
+        return false;
+    }
+
+    @Override
+    protected boolean handleCancelAll() {
+        return false;
+    }
+
+    @Override
+    public void handleDeallocate() {
+        long[] states = setEngineState(CLEAR_ALL_STATE, DEALLOCATED);
+        postEngineEvent(states[0], states[1], EngineEvent.ENGINE_DEALLOCATED);
+    }
+
+    @Override
+    public void handlePause() {
+    }
+
+    @Override
+    public boolean handleResume() {
+        return true;
+    }
+
+    @Override
+    public AudioSegment handleSpeak(int id, String item) {
+        int frames = (int) (format.getFrameRate() * millisPerChar * item.length() / 1000);
+        byte[] bytes = new byte[frames * format.getFrameSize()];
+        AudioInputStream in = new AudioInputStream(new PacedInputStream(new ByteArrayInputStream(bytes)), format, frames);
+        AudioManager manager = getAudioManager();
+        String locator = manager.getMediaLocator();
+logger.log(Level.TRACE, "speak: " + id + ", " + bytes.length + " bytes");
+        if (locator == null) {
+            return new BaseAudioSegment(item, in);
+        } else {
+            return new BaseAudioSegment(locator, item, in);
+        }
+    }
+
+    @Override
+    protected AudioSegment handleSpeak(int id, Speakable item) {
+        return handleSpeak(id, item.getMarkupText());
+    }
+
+    @Override
+    protected AudioFormat getEngineAudioFormat() {
+        return format;
+    }
+
+    @Override
+    protected void handlePropertyChangeRequest(BaseEngineProperties properties, String propName, Object oldValue, Object newValue) {
+        properties.commitPropertyChange(propName, oldValue, newValue);
+    }
+
+    /**
+     * delays the first read by the latency, later reads are paced by the real time factor
+     * as an engine producing audio while it is read.
+     */
+    private static final class PacedInputStream extends FilterInputStream {
+
+        /** wall time per a byte of audio */
+        private final double nanosPerByte;
+
+        /** bytes per a read */
+        private final int chunk;
+
+        /** time the first audio became available, -1 before the first read */
+        private long start = -1;
+
+        /** bytes read */
+        private long position;
+
+        /** */
+        PacedInputStream(InputStream in) {
+            super(in);
+            double bytesPerSecond = format.getFrameRate() * format.getFrameSize();
+            this.nanosPerByte = realTimeFactor * 1e9 / bytesPerSecond;
+            this.chunk = Math.max(format.getFrameSize(), (int) (bytesPerSecond * chunkMillis / 1000) / format.getFrameSize() * format.getFrameSize());
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (start < 0) {
+                sleep(TimeUnit.MILLISECONDS.toNanos(latency));
+                start = System.nanoTime();
+            }
+            int n = in.read(b, off, Math.min(len, chunk));
+            if (n > 0) {
+                position += n;
+                sleep(start + (long) (position * nanosPerByte) - System.nanoTime());
+            }
+            return n;
+        }
+
+        /** */
+        private static void sleep(long nanos) throws IOException {
+            if (nanos <= 0) {
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.stub;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.speech.Engine;
+import javax.speech.EngineException;
+import javax.speech.SpeechLocale;
+import javax.speech.spi.EngineFactory;
+import javax.speech.synthesis.SynthesizerMode;
+import javax.speech.synthesis.Voice;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Synthesizer mode for the stub engine.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.stub.voices ... comma separated "locale:name:gender:age",
+ *      gender is one of "female", "male", "neutral", age is one of "child", "teenager",
+ *      "younger_adult", "middle_adult", "older_adult", e.g. "ja_JP:stub-female:female:younger_adult"</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class StubSynthesizerMode extends SynthesizerMode implements EngineFactory {
+
+    private static final Logger logger = getLogger(StubSynthesizerMode.class.getName());
+
+    /** voices the stub engine has */
+    static Voice[] VOICES = {
+        new Voice(new SpeechLocale("ja", "JP"), "stub-female", Voice.GENDER_FEMALE, Voice.AGE_YOUNGER_ADULT, Voice.VARIANT_DEFAULT),
+        new Voice(new SpeechLocale("ja", "JP"), "stub-male", Voice.GENDER_MALE, Voice.AGE_MIDDLE_ADULT, Voice.VARIANT_DEFAULT),
+        new Voice(new SpeechLocale("en", "US"), "stub-english", Voice.GENDER_FEMALE, Voice.AGE_YOUNGER_ADULT, Voice.VARIANT_DEFAULT),
+    };
+
+    /* */
+    static {
+        String voices = System.getProperty("vavi.speech.rpc.stub.voices");
+        if (voices != null) {
+            VOICES = parseVoices(voices);
+        }
+    }
+
+    /**
+     * @param voices comma separated "locale:name:gender:age"
+     * @throws IllegalArgumentException a voice is malformed
+     */
+    static Voice[] parseVoices(String voices) {
+        List<Voice> result = new ArrayList<>();
+        for (String voice : voices.split(",")) {
+            if (voice.isBlank()) {
+                continue;
+            }
+            String[] fields = voice.strip().split(":");
+            if (fields.length < 2) {
+                throw new IllegalArgumentException("voice: " + voice);
+            }
+            String[] locale = fields[0].split("_", 3);
+            int gender = fields.length > 2 ? gender(fields[2]) : Voice.GENDER_DONT_CARE;
+            int age = fields.length > 3 ? age(fields[3]) : Voice.AGE_DONT_CARE;
+            SpeechLocale speechLocale = switch (locale.length) {
+                case 1 -> new SpeechLocale(locale[0]);
+                case 2 -> new SpeechLocale(locale[0], locale[1]);
+                default -> new SpeechLocale(locale[0], locale[1], locale[2]);
+            };
+            result.add(new Voice(speechLocale, fields[1], gender, age, Voice.VARIANT_DEFAULT));
+        }
+logger.log(Level.DEBUG, "voices: " + result);
+        return result.toArray(Voice[]::new);
+    }
+
+    /** */
+    private static int gender(String gender) {
+        return switch (gender.toLowerCase(Locale.ROOT)) {
+            case "female" -> Voice.GENDER_FEMALE;
+            case "male" -> Voice.GENDER_MALE;
+            case "neutral" -> Voice.GENDER_NEUTRAL;
+            case "", "dont_care" -> Voice.GENDER_DONT_CARE;
+            default -> throw new IllegalArgumentException("gender: " + gender);
+        };
+    }
+
+    /** */
+    private static int age(String age) {
+        return switch (age.toLowerCase(Locale.ROOT)) {
+            case "child" -> Voice.AGE_CHILD;
+            case "teenager" -> Voice.AGE_TEENAGER;
+            case "younger_adult" -> Voice.AGE_YOUNGER_ADULT;
+            case "middle_adult" -> Voice.AGE_MIDDLE_ADULT;
+            case "older_adult" -> Voice.AGE_OLDER_ADULT;
+            case "", "dont_care" -> Voice.AGE_DONT_CARE;
+            default -> throw new IllegalArgumentException("age: " + age);
+        };
+    }
+
+    /** for the server, which creates a mode by its class name */
+    public StubSynthesizerMode() {
+        super("Stub", StubSynthesizerMode.class.getName(), null, null, null, null);
+    }
+
+    /**
+     * Constructs a new object.
+     *
+     * @param engineName the name of the engine
+     * @param modeName the name of the mode
+     */
+    public StubSynthesizerMode(String engineName,
+                               String modeName,
+                               Boolean running,
+                               Boolean supportsLetterToSound,
+                               Boolean supportsMarkup,
+                               Voice[] voices) {
+        super(engineName, modeName, running, supportsLetterToSound, supportsMarkup, voices);
+    }
+
+    @Override
+    public Engine createEngine() throws IllegalArgumentException, EngineException {
+        return new StubSynthesizer(this);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vavi.speech.rpc.jsapi2.client.Codec;
+import vavi.speech.rpc.jsapi2.client.Codecs;
+import vavi.speech.rpc.jsapi2.client.RpcClient.SynthesizerPropertiesDTO;
+import vavi.speech.rpc.jsapi2.client.RpcClient.VoiceDTO;
+
+
+/**
+ * CodecBenchmark. encodes and decodes values sent on every call.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"application/json", Codecs.BINARY})
+    String mediaType;
+
+    Codec codec;
+
+    VoiceDTO[] voices;
+
+    SynthesizerPropertiesDTO properties;
+
+    byte[] encodedVoices;
+
+    byte[] encodedProperties;
+
+    @Setup
+    public void setup() throws IOException {
+        codec = Codecs.get(mediaType);
+        voices = new VoiceDTO[16];
+        for (int i = 0; i < voices.length; i++) {
+            VoiceDTO voice = new VoiceDTO();
+            voice.locale = new VoiceDTO.SpeechLocaleDTO();
+            voice.locale.language = "ja";
+            voice.locale.country = "JP";
+            voice.name = "voice" + i;
+            voice.gender = i % 3;
+            voice.age = i % 5;
+            voices[i] = voice;
+        }
+        properties = new SynthesizerPropertiesDTO();
+        properties.voice = voices[0];
+        properties.volume = 80;
+        properties.pitch = 120;
+        properties.pitchRange = 10;
+        properties.speakingRate = 150;
+        encodedVoices = encode(voices, VoiceDTO[].class);
+        encodedProperties = encode(properties, SynthesizerPropertiesDTO.class);
+    }
+
+    private byte[] encode(Object value, Class<?> type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(value, type, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeVoices() throws IOException {
+        return encode(voices, VoiceDTO[].class);
+    }
+
+    @Benchmark
+    public Object decodeVoices() throws IOException {
+        return codec.read(VoiceDTO[].class, new ByteArrayInputStream(encodedVoices));
+    }
+
+    @Benchmark
+    public byte[] encodeProperties() throws IOException {
+        return encode(properties, SynthesizerPropertiesDTO.class);
+    }
+
+    @Benchmark
+    public Object decodeProperties() throws IOException {
+        return codec.read(SynthesizerPropertiesDTO.class, new ByteArrayInputStream(encodedProperties));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.benchmark;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import javax.speech.synthesis.Voice;
+
+import org.eclipse.jetty.server.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import vavi.speech.rpc.jsapi2.client.HttpTransport;
+import vavi.speech.rpc.jsapi2.client.RpcClient;
+import vavi.speech.rpc.jsapi2.client.Transport;
+import vavi.speech.rpc.jsapi2.client.WebSocketTransport;
+import vavi.speech.rpc.jsapi2.server.Main;
+import vavi.speech.rpc.jsapi2.stub.StubSynthesizerMode;
+
+
+/**
+ * RoundTripBenchmark. {@link RpcClient} to the server in the same jvm with the stub engine.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>vavi.speech.rpc.benchmark.url ... address the server listens, default "http://localhost:60091/"</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    static final String modeName = StubSynthesizerMode.class.getName();
+
+    @Param({"http", "websocket"})
+    String transport;
+
+    Server server;
+
+    RpcClient client;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        String url = System.getProperty("vavi.speech.rpc.benchmark.url", "http://localhost:60091/");
+        System.setProperty("vavi.speech.rpc.server.catalog", modeName);
+        server = Main.start(URI.create(url));
+        Transport t = transport.equals("websocket") ? new WebSocketTransport(url) : new HttpTransport(url);
+        client = new RpcClient(t);
+        client.getVoices(modeName); // selects the default engine
+    }
+
+    @TearDown(Level.Iteration)
+    public void drain() {
+        client.cancelAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public long getEngineState() {
+        return client.getEngineState();
+    }
+
+    @Benchmark
+    public Voice[] getVoices() {
+        return client.getVoices(modeName);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Voice[] getVoicesConcurrent() {
+        return client.getVoices(modeName);
+    }
+
+    @Benchmark
+    public int speak() {
+        return client.speak("ベンチマーク。");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int speakConcurrent() {
+        return client.speak("ベンチマーク。");
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.Test;
+import vavi.speech.rpc.jsapi2.client.RpcClient.SynthesizerPropertiesDTO;
+import vavi.speech.rpc.jsapi2.client.RpcClient.VoiceDTO;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * CodecsTest. values of every rpc type go through every codec and come back the same.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class CodecsTest {
+
+    /** values are compared by their json, dtos have no equals */
+    static final Gson gson = new GsonBuilder().serializeNulls().create();
+
+    static final List<Codec> codecs = List.of(new JsonCodec(), new BinaryCodec());
+
+    /** */
+    static VoiceDTO voice(String language, String country, String name, int gender, int age, String modeName) {
+        VoiceDTO voice = new VoiceDTO();
+        if (language != null) {
+            voice.locale = new VoiceDTO.SpeechLocaleDTO();
+            voice.locale.language = language;
+            voice.locale.country = country;
+        }
+        voice.name = name;
+        voice.gender = gender;
+        voice.age = age;
+        voice.variant = 1;
+        voice.modeName = modeName;
+        return voice;
+    }
+
+    /** key: type, value: sample values including nulls */
+    static Map<Type, List<Object>> samples() {
+        Map<Type, List<Object>> samples = new LinkedHashMap<>();
+        samples.put(boolean.class, List.of(true, false));
+        samples.put(Boolean.class, List.of(true, false));
+        samples.put(int.class, List.of(0, -1, Integer.MAX_VALUE));
+        samples.put(Integer.class, List.of(1, Integer.MIN_VALUE));
+        samples.put(long.class, List.of(0L, Long.MAX_VALUE));
+        samples.put(Long.class, List.of(-1L, 1L << 40));
+
+        List<Object> ints = new ArrayList<>();
+        ints.add(new int[0]);
+        ints.add(new int[] {1, -2, 3});
+        ints.add(null);
+        samples.put(int[].class, ints);
+
+        List<Object> strings = new ArrayList<>();
+        strings.add(new String[0]);
+        strings.add(new String[] {"あいう。", "", null, "abc"});
+        strings.add(null);
+        samples.put(String[].class, strings);
+
+        List<Object> voices = new ArrayList<>();
+        voices.add(voice("ja", "JP", "女性", 1, 4, null));
+        voices.add(voice(null, null, null, 0, 0, "vavi.speech.rpc.jsapi2.stub.StubSynthesizerMode"));
+        voices.add(null);
+        samples.put(VoiceDTO.class, voices);
+
+        List<Object> voiceArrays = new ArrayList<>();
+        voiceArrays.add(new VoiceDTO[0]);
+        voiceArrays.add(new VoiceDTO[] {voice("en", "", "a", 2, 8, "m"), null, voice(null, null, "b", 4, 16, null)});
+        voiceArrays.add(null);
+        samples.put(VoiceDTO[].class, voiceArrays);
+
+        List<Object> properties = new ArrayList<>();
+        properties.add(new SynthesizerPropertiesDTO());
+        SynthesizerPropertiesDTO partial = new SynthesizerPropertiesDTO();
+        partial.voice = voice("ja", "JP", "男性", 2, 8, null);
+        partial.pitch = 150;
+        partial.priority = 7;
+        properties.add(partial);
+        SynthesizerPropertiesDTO full = new SynthesizerPropertiesDTO();
+        full.reset = true;
+        full.voice = voice(null, null, null, 0, 0, null);
+        full.volume = 50;
+        full.pitch = 100;
+        full.pitchRange = 10;
+        full.speakingRate = 200;
+        full.interruptibility = 1;
+        full.priority = 5;
+        full.base = "http://example.com/";
+        properties.add(full);
+        samples.put(SynthesizerPropertiesDTO.class, properties);
+        return samples;
+    }
+
+    /** */
+    static Object roundTrip(Codec codec, Object value, Type type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(value, type, out);
+        return codec.read(type, new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    void testAllTypes() throws Exception {
+        Map<Type, List<Object>> samples = samples();
+        for (Type type : samples.keySet()) {
+            assertTrue(Codecs.isRpcType(type), type.getTypeName());
+        }
+        for (Codec codec : codecs) {
+            for (Map.Entry<Type, List<Object>> e : samples.entrySet()) {
+                assertTrue(codec.supports(e.getKey()), codec.getMediaType() + ", " + e.getKey().getTypeName());
+                for (Object value : e.getValue()) {
+                    Object result = roundTrip(codec, value, e.getKey());
+                    assertEquals(gson.toJson(value, e.getKey()), gson.toJson(result, e.getKey()),
+                            codec.getMediaType() + ", " + e.getKey().getTypeName());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testNulls() throws Exception {
+        for (Codec codec : codecs) {
+            assertNull(roundTrip(codec, null, int[].class));
+            assertNull(roundTrip(codec, null, String[].class));
+            assertNull(roundTrip(codec, null, VoiceDTO.class));
+            assertNull(roundTrip(codec, null, VoiceDTO[].class));
+            VoiceDTO[] voices = (VoiceDTO[]) roundTrip(codec, new VoiceDTO[] {null}, VoiceDTO[].class);
+            assertEquals(1, voices.length);
+            assertNull(voices[0]);
+        }
+    }
+
+    @Test
+    void testPartialProperties() throws Exception {
+        SynthesizerPropertiesDTO partial = new SynthesizerPropertiesDTO();
+        partial.volume = 0;
+        partial.base = "";
+        for (Codec codec : codecs) {
+            SynthesizerPropertiesDTO result = (SynthesizerPropertiesDTO) roundTrip(codec, partial, SynthesizerPropertiesDTO.class);
+            assertNull(result.reset);
+            assertNull(result.voice);
+            assertEquals(0, (int) result.volume);
+            assertNull(result.pitch);
+            assertNull(result.pitchRange);
+            assertNull(result.speakingRate);
+            assertNull(result.interruptibility);
+            assertNull(result.priority);
+            assertEquals("", result.base);
+        }
+    }
+
+    @Test
+    void testBinaryLayout() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryCodec().write(null, VoiceDTO[].class, out);
+        assertEquals(Arrays.toString(new byte[] {-1, -1, -1, -1}), Arrays.toString(out.toByteArray()));
+    }
+
+    @Test
+    void testProvider() throws Exception {
+        CodecProvider provider = new CodecProvider();
+        MediaType binary = new MediaType("application", "x-jsapi2-binary");
+        MediaType json = MediaType.APPLICATION_JSON_TYPE;
+        for (MediaType mediaType : List.of(binary, json)) {
+            assertTrue(provider.isWriteable(VoiceDTO[].class, VoiceDTO[].class, null, mediaType));
+            assertTrue(provider.isReadable(SynthesizerPropertiesDTO.class, SynthesizerPropertiesDTO.class, null, mediaType));
+            assertFalse(provider.isWriteable(String.class, String.class, null, mediaType));
+
+            VoiceDTO[] voices = {voice("ja", "JP", "a", 1, 4, "m")};
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            provider.writeTo(voices, VoiceDTO[].class, VoiceDTO[].class, null, mediaType, null, out);
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Object result = provider.readFrom((Class) VoiceDTO[].class, VoiceDTO[].class, null, mediaType, null,
+                    new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(gson.toJson(voices), gson.toJson(result));
+        }
+        assertFalse(provider.isReadable(VoiceDTO.class, VoiceDTO.class, null, MediaType.TEXT_PLAIN_TYPE));
+        assertFalse(provider.isReadable(VoiceDTO.class, VoiceDTO.class, null, null));
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import javax.speech.SpeechLocale;
+import javax.speech.synthesis.SynthesizerProperties;
+import javax.speech.synthesis.Voice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * AudioCacheTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class AudioCacheTest {
+
+    static final String MODE = "vavi.speech.rpc.jsapi2.stub.StubSynthesizerMode";
+
+    static final String LOCATOR = "javax.sound.sampled.AudioFormat";
+
+    @TempDir
+    Path dir;
+
+    /** only the properties the key is made of */
+    static SynthesizerProperties properties(Voice voice, int volume, int rate, int pitch) {
+        return (SynthesizerProperties) Proxy.newProxyInstance(AudioCacheTest.class.getClassLoader(),
+                new Class<?>[] {SynthesizerProperties.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getVoice" -> voice;
+                    case "getVolume" -> volume;
+                    case "getSpeakingRate" -> rate;
+                    case "getPitch" -> pitch;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /** */
+    static byte[] audio(int length, int value) {
+        byte[] audio = new byte[length];
+        Arrays.fill(audio, (byte) value);
+        return audio;
+    }
+
+    @Test
+    void testKey() throws Exception {
+        SynthesizerProperties sp = properties(null, 100, 200, 150);
+        // keys on disk are addressed over restarts, the digest must not change
+        assertEquals("11dc413fe39f9a9c600a1fc344dc03b0c1582b2a0ae56092f0c4dc7fbbc52ec7",
+                AudioCache.key(MODE, LOCATOR, sp, "こんにちは 世界"));
+        // text which sounds the same
+        assertEquals(AudioCache.key(MODE, LOCATOR, sp, "こんにちは 世界"),
+                AudioCache.key(MODE, LOCATOR, sp, "　こんにちは　　世界 \n"));
+        assertEquals(AudioCache.key(MODE, LOCATOR, sp, "ABC 1"), AudioCache.key(MODE, LOCATOR, sp, "ＡＢＣ　１"));
+
+        // what determines the audio
+        assertNotEquals(AudioCache.key(MODE, LOCATOR, sp, "a"), AudioCache.key(MODE, LOCATOR, sp, "b"));
+        assertNotEquals(AudioCache.key(MODE, LOCATOR, sp, "a"), AudioCache.key("other", LOCATOR, sp, "a"));
+        assertNotEquals(AudioCache.key(MODE, LOCATOR, sp, "a"), AudioCache.key(MODE, "other", sp, "a"));
+        assertNotEquals(AudioCache.key(MODE, LOCATOR, sp, "a"), AudioCache.key(MODE, LOCATOR, properties(null, 50, 200, 150), "a"));
+        assertNotEquals(AudioCache.key(MODE, LOCATOR, sp, "a"), AudioCache.key(MODE, LOCATOR, properties(null, 100, 100, 150), "a"));
+        assertNotEquals(AudioCache.key(MODE, LOCATOR, sp, "a"), AudioCache.key(MODE, LOCATOR, properties(null, 100, 200, 100), "a"));
+
+        Voice female = new Voice(new SpeechLocale("ja", "JP"), "a", Voice.GENDER_FEMALE, Voice.AGE_MIDDLE_ADULT, Voice.VARIANT_DONT_CARE);
+        Voice male = new Voice(new SpeechLocale("ja", "JP"), "a", Voice.GENDER_MALE, Voice.AGE_MIDDLE_ADULT, Voice.VARIANT_DONT_CARE);
+        assertEquals(AudioCache.key(MODE, LOCATOR, properties(female, 100, 200, 150), "a"),
+                AudioCache.key(MODE, LOCATOR, properties(female, 100, 200, 150), "a"));
+        assertNotEquals(AudioCache.key(MODE, LOCATOR, properties(female, 100, 200, 150), "a"),
+                AudioCache.key(MODE, LOCATOR, properties(male, 100, 200, 150), "a"));
+        assertNotEquals(AudioCache.key(MODE, LOCATOR, sp, "a"),
+                AudioCache.key(MODE, LOCATOR, properties(female, 100, 200, 150), "a"));
+    }
+
+    @Test
+    void testEviction() throws Exception {
+        try (AudioCache cache = new AudioCache(10, null)) {
+            cache.put("a", audio(4, 1));
+            cache.put("b", audio(4, 2));
+            // a is used recently, b is the eldest
+            assertArrayEquals(audio(4, 1), cache.get("a"));
+            cache.put("c", audio(4, 3));
+            assertNull(cache.get("b"));
+            assertArrayEquals(audio(4, 1), cache.get("a"));
+            assertArrayEquals(audio(4, 3), cache.get("c"));
+            assertEquals(8, cache.getBytes());
+
+            // larger than the memory tier
+            cache.put("d", audio(11, 4));
+            assertNull(cache.get("d"));
+            assertEquals(8, cache.getBytes());
+
+            // replaced
+            cache.put("c", audio(2, 5));
+            assertArrayEquals(audio(2, 5), cache.get("c"));
+            assertEquals(6, cache.getBytes());
+
+            assertEquals(4, cache.getHits());
+            assertEquals(2, cache.getMisses());
+        }
+    }
+
+    @Test
+    void testDisabled() throws Exception {
+        try (AudioCache cache = new AudioCache(0, null)) {
+            assertFalse(cache.isEnabled());
+            cache.put("a", audio(1, 1));
+            assertNull(cache.get("a"));
+            assertFalse(cache.writeTo("a", new ByteArrayOutputStream()));
+        }
+    }
+
+    @Test
+    void testRestart() throws Exception {
+        try (AudioCache cache = new AudioCache(1024, new SegmentStore(dir, 1024, 4))) {
+            cache.put("00".repeat(32), audio(100, 1));
+            cache.put("01".repeat(32), audio(200, 2));
+        }
+        try (AudioCache cache = new AudioCache(1024, new SegmentStore(dir, 1024, 4))) {
+            assertEquals(0, cache.getBytes());
+            assertArrayEquals(audio(100, 1), cache.get("00".repeat(32)));
+            // read from the disk tier into the memory tier
+            assertEquals(100, cache.getBytes());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertTrue(cache.writeTo("01".repeat(32), out));
+            assertArrayEquals(audio(200, 2), out.toByteArray());
+            assertNull(cache.get("02".repeat(32)));
+        }
+    }
+
+    @Test
+    void testRestartSegments() throws Exception {
+        // a segment holds two entries, two segments are kept
+        try (AudioCache cache = new AudioCache(1024, new SegmentStore(dir, 200, 2))) {
+            for (int i = 0; i < 6; i++) {
+                cache.put(String.format("%02x", i).repeat(32), audio(100, i));
+            }
+        }
+        try (AudioCache cache = new AudioCache(1024, new SegmentStore(dir, 200, 2))) {
+            for (int i = 0; i < 2; i++) {
+                assertNull(cache.get(String.format("%02x", i).repeat(32)), "removed " + i);
+            }
+            for (int i = 2; i < 6; i++) {
+                assertArrayEquals(audio(100, i), cache.get(String.format("%02x", i).repeat(32)), "kept " + i);
+            }
+        }
+        try (var files = Files.list(dir)) {
+            assertEquals(2, files.filter(p -> p.getFileName().toString().startsWith("segment-")).count());
+        }
+    }
+
+    @Test
+    void testRestartTruncated() throws Exception {
+        try (AudioCache cache = new AudioCache(1024, new SegmentStore(dir, 1024, 4))) {
+            cache.put("00".repeat(32), audio(100, 1));
+            cache.put("01".repeat(32), audio(100, 2));
+        }
+        // as a crash while appending the second audio
+        try (FileChannel channel = FileChannel.open(dir.resolve("segment-00000000.dat"), StandardOpenOption.WRITE)) {
+            channel.truncate(150);
+        }
+        try (SegmentStore store = new SegmentStore(dir, 1024, 4)) {
+            assertEquals(1, store.size());
+            assertArrayEquals(audio(100, 1), store.get("00".repeat(32)));
+            assertNull(store.get("01".repeat(32)));
+        }
+    }
+}
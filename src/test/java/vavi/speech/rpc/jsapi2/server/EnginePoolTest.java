@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.speech.Engine;
+import javax.speech.EngineException;
+import javax.speech.EngineList;
+import javax.speech.EngineManager;
+import javax.speech.EngineMode;
+import javax.speech.spi.EngineFactory;
+import javax.speech.spi.EngineListFactory;
+import javax.speech.synthesis.Synthesizer;
+import javax.speech.synthesis.SynthesizerMode;
+import javax.speech.synthesis.SynthesizerProperties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import vavi.speech.rpc.jsapi2.stub.StubSynthesizerMode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static vavi.speech.rpc.jsapi2.server.SchedulerTest.await;
+import static vavi.speech.rpc.jsapi2.server.SchedulerTest.properties;
+
+
+/**
+ * EnginePoolTest. an engine which does not stop is retired, the preempted job is requeued.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class EnginePoolTest {
+
+    static final String MODE = StuckSynthesizerMode.class.getName();
+
+    static {
+        System.setProperty("vavi.speech.rpc.stub.realTimeFactor", "1");
+    }
+
+    /** engines created by the pool */
+    static final List<Synthesizer> engines = new CopyOnWriteArrayList<>();
+
+    /** engines deallocated */
+    static final List<Synthesizer> deallocated = new CopyOnWriteArrayList<>();
+
+    /** the stub engine, the first one created ignores cancel of an utterance */
+    public static class StuckSynthesizerMode extends SynthesizerMode implements EngineFactory {
+
+        /** */
+        public StuckSynthesizerMode() {
+            super("Stuck", StuckSynthesizerMode.class.getName(), null, null, null, null);
+        }
+
+        @Override
+        public Engine createEngine() throws IllegalArgumentException, EngineException {
+            Synthesizer engine = (Synthesizer) new StubSynthesizerMode().createEngine();
+            boolean stuck = engines.isEmpty();
+            Synthesizer synthesizer = (Synthesizer) Proxy.newProxyInstance(EnginePoolTest.class.getClassLoader(),
+                    new Class<?>[] {Synthesizer.class}, (proxy, method, args) -> {
+                        if (stuck && method.getName().equals("cancel") && args != null && args.length == 1) {
+                            return true;
+                        }
+                        if (method.getName().equals("deallocate")) {
+                            deallocated.add((Synthesizer) proxy);
+                        }
+                        try {
+                            return method.invoke(engine, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+            engines.add(synthesizer);
+            return synthesizer;
+        }
+    }
+
+    /** lists {@link StuckSynthesizerMode} */
+    public static class StuckEngineListFactory implements EngineListFactory {
+
+        @Override
+        public EngineList createEngineList(EngineMode require) {
+            return require instanceof StuckSynthesizerMode ? new EngineList(new EngineMode[] {require}) : null;
+        }
+    }
+
+    @BeforeEach
+    void setup() throws Exception {
+        EngineManager.registerEngineListFactory(StuckEngineListFactory.class.getName());
+        engines.clear();
+        deallocated.clear();
+        System.setProperty("vavi.speech.rpc.server.poolSize." + MODE, "1");
+    }
+
+    @AfterEach
+    void teardown() {
+        System.clearProperty("vavi.speech.rpc.server.poolSize." + MODE);
+    }
+
+    @Test
+    void testRequeue() throws Exception {
+        try (EnginePool pool = new EnginePool()) {
+            List<String> order = new CopyOnWriteArrayList<>();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            CompletableFuture<EnginePool.Rendered> background = pool.submit(MODE, "background",
+                    properties(SynthesizerProperties.MIN_PRIORITY), "あ".repeat(500), Long.MAX_VALUE, out, 0);
+            background.thenRun(() -> order.add("background"));
+            await(() -> out.size() > 0);
+            CompletableFuture<EnginePool.Rendered> alert = pool.submit(MODE, "alert",
+                    properties(SynthesizerProperties.MAX_PRIORITY), "い", Long.MAX_VALUE, new ByteArrayOutputStream(), 0);
+            alert.thenRun(() -> order.add("alert"));
+            CompletableFuture.allOf(background, alert).get(30, TimeUnit.SECONDS);
+
+            // the alert is spoken by a new engine, the stuck one is retired
+            assertEquals(List.of("alert", "background"), order);
+            assertEquals(2, engines.size());
+            await(() -> deallocated.contains(engines.get(0)));
+            // nothing of the first attempt is left
+            assertTrue(background.get().completed());
+            assertEquals(background.get().written(), out.size());
+        }
+    }
+
+    @Test
+    void testStuckAfterSent() throws Exception {
+        try (EnginePool pool = new EnginePool()) {
+            // audio already sent cannot be taken back
+            AtomicLong sent = new AtomicLong();
+            OutputStream out = new OutputStream() {
+                @Override public void write(int b) {
+                    sent.incrementAndGet();
+                }
+                @Override public void write(byte[] b, int off, int len) {
+                    sent.addAndGet(len);
+                }
+            };
+            CompletableFuture<EnginePool.Rendered> background = pool.submit(MODE, "background",
+                    properties(SynthesizerProperties.MIN_PRIORITY), "あ".repeat(500), Long.MAX_VALUE, out, 0);
+            await(() -> sent.get() > 0);
+            CompletableFuture<EnginePool.Rendered> alert = pool.submit(MODE, "alert",
+                    properties(SynthesizerProperties.MAX_PRIORITY), "い", Long.MAX_VALUE, new ByteArrayOutputStream(), 0);
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> background.get(30, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e.getCause());
+            assertTrue(e.getCause().getMessage().startsWith("not cancelled"));
+            assertTrue(alert.get(30, TimeUnit.SECONDS).completed());
+            assertEquals(2, engines.size());
+            await(() -> deallocated.contains(engines.get(0)));
+        }
+    }
+}
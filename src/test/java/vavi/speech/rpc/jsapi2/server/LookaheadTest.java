@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.speech.AudioSegment;
+import javax.speech.synthesis.SpeakableEvent;
+import javax.speech.synthesis.SpeakableListener;
+import javax.speech.synthesis.Synthesizer;
+import javax.speech.synthesis.SynthesizerMode;
+import javax.speech.synthesis.SynthesizerProperties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import vavi.speech.rpc.jsapi2.stub.StubSynthesizerMode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * LookaheadTest. texts started ahead are bounded by the count and the bytes,
+ * buffers are dropped when segments end or are cancelled.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class LookaheadTest {
+
+    /** a text submitted to the pool, completed by the test */
+    record Submitted(String text, OutputStream out, CompletableFuture<EnginePool.Rendered> result) {
+
+        /** as an engine of the pool synthesized the text */
+        void complete(int bytes) throws Exception {
+            out.write(new byte[bytes]);
+            result.complete(new EnginePool.Rendered(true, null, 0, 0, bytes));
+        }
+    }
+
+    /** records texts instead of synthesizing them */
+    static class RecordingPool extends EnginePool {
+
+        final List<Submitted> submitted = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableFuture<Rendered> submit(String modeName, String client, SynthesizerProperties properties, String text,
+                                                  long deadline, OutputStream out, int captureLimit) {
+            CompletableFuture<Rendered> result = new CompletableFuture<>();
+            submitted.add(new Submitted(text, out, result));
+            return result;
+        }
+
+        /** */
+        List<String> texts() {
+            return submitted.stream().map(Submitted::text).toList();
+        }
+    }
+
+    /** listeners of audio segments, key: speakable id */
+    final Map<Integer, SpeakableListener> listeners = new ConcurrentHashMap<>();
+
+    final AtomicInteger ids = new AtomicInteger();
+
+    RecordingPool pool;
+
+    /** the engine played on the server, segment events are sent by the test */
+    Synthesizer synthesizer;
+
+    @BeforeEach
+    void setup() {
+        pool = new RecordingPool();
+        SynthesizerMode mode = new StubSynthesizerMode();
+        synthesizer = (Synthesizer) Proxy.newProxyInstance(LookaheadTest.class.getClassLoader(),
+                new Class<?>[] {Synthesizer.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getEngineMode" -> mode;
+                    case "getSynthesizerProperties" -> null;
+                    case "speak" -> {
+                        if (!(args[0] instanceof AudioSegment)) {
+                            throw new UnsupportedOperationException(method.toString());
+                        }
+                        int id = ids.incrementAndGet();
+                        listeners.put(id, (SpeakableListener) args[1]);
+                        yield id;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @AfterEach
+    void teardown() {
+        pool.close();
+    }
+
+    /** the engine has played the segment */
+    void end(int id) {
+        listeners.get(id).speakableUpdate(new SpeakableEvent(synthesizer, SpeakableEvent.SPEAKABLE_ENDED, id, null, 0));
+    }
+
+    @Test
+    void testTexts() throws Exception {
+        try (Lookahead lookahead = new Lookahead(pool, 1, Long.MAX_VALUE)) {
+            int id1 = lookahead.speak(synthesizer, "one", null);
+            lookahead.speak(synthesizer, "two", null);
+            lookahead.speak(synthesizer, "three", null);
+            lookahead.speak(synthesizer, "four", null);
+            // the playing one and one ahead
+            assertEquals(List.of("one", "two"), pool.texts());
+
+            pool.submitted.get(0).complete(100);
+            pool.submitted.get(1).complete(100);
+            assertEquals(200, lookahead.getBytes());
+            assertEquals(List.of("one", "two"), pool.texts());
+
+            // the next starts when a segment ends
+            end(id1);
+            assertEquals(List.of("one", "two", "three"), pool.texts());
+            assertEquals(100, lookahead.getBytes());
+        }
+    }
+
+    @Test
+    void testBytes() throws Exception {
+        try (Lookahead lookahead = new Lookahead(pool, 10, 150)) {
+            int id1 = lookahead.speak(synthesizer, "one", null);
+            lookahead.speak(synthesizer, "two", null);
+            assertEquals(List.of("one", "two"), pool.texts());
+            pool.submitted.get(0).complete(100);
+            pool.submitted.get(1).complete(100);
+            assertEquals(200, lookahead.getBytes());
+
+            // over the budget, no more texts are started
+            lookahead.speak(synthesizer, "three", null);
+            assertEquals(List.of("one", "two"), pool.texts());
+
+            end(id1);
+            assertEquals(100, lookahead.getBytes());
+            assertEquals(List.of("one", "two", "three"), pool.texts());
+        }
+    }
+
+    @Test
+    void testCancel() throws Exception {
+        try (Lookahead lookahead = new Lookahead(pool, 1, Long.MAX_VALUE)) {
+            lookahead.speak(synthesizer, "one", null);
+            int id2 = lookahead.speak(synthesizer, "two", null);
+            lookahead.speak(synthesizer, "three", null);
+            pool.submitted.get(0).complete(100);
+
+            // the synthesis of a cancelled one is stopped, the next takes its place
+            lookahead.cancel(synthesizer, id2);
+            assertTrue(pool.submitted.get(1).result().isCancelled());
+            assertEquals(List.of("one", "two", "three"), pool.texts());
+            assertEquals(100, lookahead.getBytes());
+
+            // all of the engine
+            lookahead.cancelAll(synthesizer);
+            assertTrue(pool.submitted.get(2).result().isCancelled());
+            assertEquals(0, lookahead.getBytes());
+        }
+    }
+
+    @Test
+    void testRemove() throws Exception {
+        try (Lookahead lookahead = new Lookahead(pool, 1, Long.MAX_VALUE)) {
+            lookahead.speak(synthesizer, "one", null);
+            lookahead.speak(synthesizer, "two", null);
+            pool.submitted.get(0).complete(100);
+            assertEquals(100, lookahead.getBytes());
+
+            // the engine is deallocated
+            lookahead.remove(synthesizer);
+            assertFalse(pool.submitted.get(0).result().isCancelled());
+            assertTrue(pool.submitted.get(1).result().isCancelled());
+            assertEquals(0, lookahead.getBytes());
+
+            // a new pipeline for the engine
+            lookahead.speak(synthesizer, "three", null);
+            assertEquals(List.of("one", "two", "three"), pool.texts());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.speech.synthesis.Synthesizer;
+import javax.speech.synthesis.SynthesizerMode;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+/**
+ * PhonemeCacheTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class PhonemeCacheTest {
+
+    /** sentences the engine is asked */
+    final List<String> asked = new ArrayList<>();
+
+    /** an engine which has phonemes only for the sentences of the map */
+    Synthesizer synthesizer(Map<String, String> phonemes) {
+        SynthesizerMode mode = new SynthesizerMode("Test", "phonemizer", null, null, null, null);
+        return (Synthesizer) Proxy.newProxyInstance(PhonemeCacheTest.class.getClassLoader(),
+                new Class<?>[] {Synthesizer.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getEngineMode" -> mode;
+                    case "getPhonemes" -> {
+                        asked.add((String) args[0]);
+                        yield phonemes.get((String) args[0]);
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Test
+    void testCached() throws Exception {
+        PhonemeCache cache = new PhonemeCache();
+        Synthesizer synthesizer = synthesizer(Map.of("こんにちは。", "konnichiwa", "さようなら。", "sayoonara"));
+        assertEquals("konnichiwa\nsayoonara", cache.getPhonemes(synthesizer, "こんにちは。さようなら。"));
+        assertEquals("sayoonara", cache.getPhonemes(synthesizer, "さようなら。"));
+        assertEquals(List.of("こんにちは。", "さようなら。"), asked);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testAbsent() throws Exception {
+        PhonemeCache cache = new PhonemeCache();
+        Synthesizer synthesizer = synthesizer(Map.of("こんにちは。", "konnichiwa"));
+        assertNull(cache.getPhonemes(synthesizer, "未知。"));
+        // absence is cached too
+        assertNull(cache.getPhonemes(synthesizer, "未知。"));
+        assertEquals(List.of("未知。"), asked);
+        // a sentence without phonemes is an empty line
+        assertEquals("konnichiwa\n", cache.getPhonemes(synthesizer, "こんにちは。未知。"));
+    }
+
+    @Test
+    void testMarkup() throws Exception {
+        PhonemeCache cache = new PhonemeCache();
+        Synthesizer synthesizer = synthesizer(Map.of("a<b。", "a\"b"));
+        String markup = cache.toMarkup(synthesizer, "a<b。未知&。");
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<speak version=\"1.0\" xmlns=\"http://www.w3.org/2001/10/synthesis\">" +
+                "<phoneme ph=\"a&quot;b\">a&lt;b。</phoneme>" +
+                "未知&amp;。" +
+                "</speak>", markup);
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import javax.speech.synthesis.SpeakableEvent;
+import javax.speech.synthesis.Synthesizer;
+import javax.speech.synthesis.SynthesizerProperties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import vavi.speech.rpc.jsapi2.stub.StubSynthesizerMode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * SchedulerTest. priority classes, preemption and deadlines on the stub engine.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class SchedulerTest {
+
+    static final String MODE = StubSynthesizerMode.class.getName();
+
+    static {
+        // utterances take as long as they sound, the first test initializing the stub decides
+        System.setProperty("vavi.speech.rpc.stub.realTimeFactor", "1");
+    }
+
+    /** ids the scheduler cancelled */
+    final List<Integer> cancelled = new CopyOnWriteArrayList<>();
+
+    /** the stub engine played on the server */
+    Synthesizer engine;
+
+    /** the engine recording cancels */
+    Synthesizer synthesizer;
+
+    @BeforeEach
+    void setup() {
+        engine = EngineRegistry.newSynthesizer(MODE);
+        synthesizer = (Synthesizer) Proxy.newProxyInstance(SchedulerTest.class.getClassLoader(),
+                new Class<?>[] {Synthesizer.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("cancel") && args != null && args.length == 1) {
+                        cancelled.add((Integer) args[0]);
+                    }
+                    try {
+                        return method.invoke(engine, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        engine.cancelAll();
+        engine.deallocate();
+    }
+
+    /** only the properties a pooled job is made of */
+    static SynthesizerProperties properties(int priority) {
+        return (SynthesizerProperties) Proxy.newProxyInstance(SchedulerTest.class.getClassLoader(),
+                new Class<?>[] {SynthesizerProperties.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getPriority" -> priority;
+                    case "getVoice" -> null;
+                    case "getVolume" -> 100;
+                    case "getSpeakingRate" -> 200;
+                    case "getPitch" -> 150;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /** */
+    static void await(BooleanSupplier condition) throws InterruptedException {
+        long limit = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() - limit < 0, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    /** */
+    static double counter(String name, Scheduler.PriorityClass c) {
+        return Metrics.counter(name, "class", c.label()).get();
+    }
+
+    /** */
+    int speak(Scheduler scheduler, int priority, long deadline, String text) throws Exception {
+        synthesizer.getSynthesizerProperties().setPriority(priority);
+        return scheduler.speak(synthesizer, deadline, l -> synthesizer.speak(text, l));
+    }
+
+    @Test
+    void testPriorityClass() throws Exception {
+        assertEquals(Scheduler.PriorityClass.ALERT, Scheduler.PriorityClass.of(SynthesizerProperties.MAX_PRIORITY));
+        assertEquals(Scheduler.PriorityClass.NORMAL, Scheduler.PriorityClass.of(SynthesizerProperties.NORM_PRIORITY));
+        assertEquals(Scheduler.PriorityClass.BACKGROUND, Scheduler.PriorityClass.of(SynthesizerProperties.MIN_PRIORITY));
+        assertTrue(Scheduler.PriorityClass.ALERT.precedes(Scheduler.PriorityClass.NORMAL));
+        assertTrue(Scheduler.PriorityClass.NORMAL.precedes(Scheduler.PriorityClass.BACKGROUND));
+    }
+
+    @Test
+    void testPreempt() throws Exception {
+        Scheduler scheduler = new Scheduler();
+        double preempted = counter("jsapi2_preempted_total", Scheduler.PriorityClass.BACKGROUND);
+        int background = speak(scheduler, SynthesizerProperties.MIN_PRIORITY, Long.MAX_VALUE, "あ".repeat(300));
+        int normal = speak(scheduler, SynthesizerProperties.NORM_PRIORITY, Long.MAX_VALUE, "い".repeat(300));
+        // a higher class cancels lower classes queued before
+        assertEquals(List.of(background), cancelled);
+        speak(scheduler, SynthesizerProperties.MAX_PRIORITY, Long.MAX_VALUE, "う");
+        assertEquals(List.of(background, normal), cancelled);
+        // the same class or a lower class does not
+        speak(scheduler, SynthesizerProperties.MIN_PRIORITY, Long.MAX_VALUE, "え");
+        assertEquals(List.of(background, normal), cancelled);
+        assertEquals(preempted + 1, counter("jsapi2_preempted_total", Scheduler.PriorityClass.BACKGROUND));
+    }
+
+    @Test
+    void testPreemptWhileEnqueued() throws Exception {
+        Scheduler scheduler = new Scheduler();
+        synthesizer.getSynthesizerProperties().setPriority(SynthesizerProperties.MIN_PRIORITY);
+        int background = scheduler.speak(synthesizer, Long.MAX_VALUE, l -> {
+            // an alert comes before the id of the background is known
+            try {
+                speak(scheduler, SynthesizerProperties.MAX_PRIORITY, Long.MAX_VALUE, "う");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            assertEquals(List.of(), cancelled);
+            return synthesizer.speak("あ".repeat(300), l);
+        });
+        assertEquals(List.of(background), cancelled);
+    }
+
+    @Test
+    void testStaleBeforeId() throws Exception {
+        Scheduler scheduler = new Scheduler();
+        double stale = counter("jsapi2_deadline_dropped_total", Scheduler.PriorityClass.NORMAL);
+        synthesizer.getSynthesizerProperties().setPriority(SynthesizerProperties.NORM_PRIORITY);
+        // the turn comes inside speak after the deadline
+        int id = scheduler.speak(synthesizer, System.nanoTime() - 1, l -> {
+            l.speakableUpdate(new SpeakableEvent(synthesizer, SpeakableEvent.TOP_OF_QUEUE, 0, null, 0));
+            return synthesizer.speak("あ", l);
+        });
+        assertEquals(List.of(id), cancelled);
+        assertEquals(stale + 1, counter("jsapi2_deadline_dropped_total", Scheduler.PriorityClass.NORMAL));
+    }
+
+    @Test
+    void testDeadline() throws Exception {
+        Scheduler scheduler = new Scheduler();
+        int first = speak(scheduler, SynthesizerProperties.NORM_PRIORITY, Long.MAX_VALUE, "あ".repeat(50));
+        int second = speak(scheduler, SynthesizerProperties.NORM_PRIORITY, Scheduler.deadline(100), "い");
+        assertEquals(2, scheduler.getQueued().get("normal"));
+        // the turn of the second comes after the first sounds for half a second
+        await(() -> cancelled.contains(second));
+        assertEquals(List.of(second), cancelled);
+        assertTrue(first != second);
+        await(() -> scheduler.getQueued().get("normal") == 0);
+    }
+
+    @Test
+    void testPoolOrder() throws Exception {
+        System.setProperty("vavi.speech.rpc.server.poolSize." + MODE, "1");
+        try (EnginePool pool = new EnginePool()) {
+            List<String> order = new CopyOnWriteArrayList<>();
+            CompletableFuture<EnginePool.Rendered> first = pool.submit(MODE, "first",
+                    properties(SynthesizerProperties.NORM_PRIORITY), "あ".repeat(100), Long.MAX_VALUE, new ByteArrayOutputStream(), 0);
+            first.thenRun(() -> order.add("first"));
+            await(() -> pool.getStats().get(MODE).get("busy") == 1);
+            // queued while the only engine is busy, neither preempts the first
+            CompletableFuture<EnginePool.Rendered> background = pool.submit(MODE, "background",
+                    properties(SynthesizerProperties.MIN_PRIORITY), "い", Long.MAX_VALUE, new ByteArrayOutputStream(), 0);
+            background.thenRun(() -> order.add("background"));
+            CompletableFuture<EnginePool.Rendered> normal = pool.submit(MODE, "normal",
+                    properties(SynthesizerProperties.NORM_PRIORITY), "う", Long.MAX_VALUE, new ByteArrayOutputStream(), 0);
+            normal.thenRun(() -> order.add("normal"));
+            CompletableFuture.allOf(first, background, normal).get(30, TimeUnit.SECONDS);
+            assertEquals(List.of("first", "normal", "background"), order);
+            assertTrue(first.get().completed());
+        } finally {
+            System.clearProperty("vavi.speech.rpc.server.poolSize." + MODE);
+        }
+    }
+
+    @Test
+    void testPoolPreempt() throws Exception {
+        System.setProperty("vavi.speech.rpc.server.poolSize." + MODE, "1");
+        try (EnginePool pool = new EnginePool()) {
+            List<String> order = new CopyOnWriteArrayList<>();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            CompletableFuture<EnginePool.Rendered> background = pool.submit(MODE, "background",
+                    properties(SynthesizerProperties.MIN_PRIORITY), "あ".repeat(300), Long.MAX_VALUE, out, 0);
+            background.thenRun(() -> order.add("background"));
+            await(() -> out.size() > 0);
+            CompletableFuture<EnginePool.Rendered> alert = pool.submit(MODE, "alert",
+                    properties(SynthesizerProperties.MAX_PRIORITY), "い", Long.MAX_VALUE, new ByteArrayOutputStream(), 0);
+            alert.thenRun(() -> order.add("alert"));
+            CompletableFuture.allOf(background, alert).get(30, TimeUnit.SECONDS);
+            // nothing of the preempted one is sent, it is synthesized again from the start
+            assertEquals(List.of("alert", "background"), order);
+            assertTrue(background.get().completed());
+            assertEquals(background.get().written(), out.size());
+        } finally {
+            System.clearProperty("vavi.speech.rpc.server.poolSize." + MODE);
+        }
+    }
+
+    @Test
+    void testPoolDeadline() throws Exception {
+        System.setProperty("vavi.speech.rpc.server.poolSize." + MODE, "1");
+        try (EnginePool pool = new EnginePool()) {
+            double stale = counter("jsapi2_deadline_dropped_total", Scheduler.PriorityClass.NORMAL);
+            CompletableFuture<EnginePool.Rendered> first = pool.submit(MODE, "first",
+                    properties(SynthesizerProperties.NORM_PRIORITY), "あ".repeat(100), Long.MAX_VALUE, new ByteArrayOutputStream(), 0);
+            await(() -> pool.getStats().get(MODE).get("busy") == 1);
+            CompletableFuture<EnginePool.Rendered> late = pool.submit(MODE, "late",
+                    properties(SynthesizerProperties.NORM_PRIORITY), "い", Scheduler.deadline(100), new ByteArrayOutputStream(), 0);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> late.get(30, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e.getCause());
+            assertEquals("deadline exceeded", e.getCause().getMessage());
+            assertTrue(first.get(30, TimeUnit.SECONDS).completed());
+            assertEquals(stale + 1, counter("jsapi2_deadline_dropped_total", Scheduler.PriorityClass.NORMAL));
+        } finally {
+            System.clearProperty("vavi.speech.rpc.server.poolSize." + MODE);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * SegmentStoreTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class SegmentStoreTest {
+
+    @TempDir
+    Path dir;
+
+    /** */
+    static byte[] audio(int length, int value) {
+        byte[] audio = new byte[length];
+        Arrays.fill(audio, (byte) value);
+        return audio;
+    }
+
+    /** */
+    static String key(int i) {
+        return String.format("%02x", i).repeat(32);
+    }
+
+    @Test
+    void testSegmentBytes() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> new SegmentStore(dir, Integer.MAX_VALUE + 1L, 1));
+        assertThrows(IllegalArgumentException.class, () -> new SegmentStore(dir, 0, 1));
+        new SegmentStore(dir, Integer.MAX_VALUE, 1).close();
+    }
+
+    @Test
+    void testEvictWhileTransferring() throws Exception {
+        int length = 1024 * 1024;
+        try (SegmentStore store = new SegmentStore(dir, length, 1)) {
+            store.put(key(0), audio(length, 1));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            // the segment being read is evicted by the first chunk written
+            WritableByteChannel target = new WritableByteChannel() {
+                boolean evicted;
+                @Override public int write(ByteBuffer src) throws IOException {
+                    if (!evicted) {
+                        evicted = true;
+                        store.put(key(1), audio(length, 2));
+                        assertFalse(store.contains(key(0)));
+                        assertTrue(Files.exists(dir.resolve("segment-00000000.dat")));
+                    }
+                    int n = src.remaining();
+                    byte[] bytes = new byte[n];
+                    src.get(bytes);
+                    out.write(bytes);
+                    return n;
+                }
+                @Override public boolean isOpen() {
+                    return true;
+                }
+                @Override public void close() {
+                }
+            };
+            assertTrue(store.transferTo(key(0), target));
+            assertArrayEquals(audio(length, 1), out.toByteArray());
+            // deleted by the last reader
+            assertFalse(Files.exists(dir.resolve("segment-00000000.dat")));
+            assertFalse(store.transferTo(key(0), target));
+            assertNull(store.get(key(0)));
+            assertArrayEquals(audio(length, 2), store.get(key(1)));
+            assertEquals(1, store.size());
+        }
+    }
+}
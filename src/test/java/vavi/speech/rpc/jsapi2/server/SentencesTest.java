@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * SentencesTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class SentencesTest {
+
+    /** reads at most a char at a time, every delimiter is across reads */
+    static class TrickleReader extends Reader {
+        final Reader in;
+        TrickleReader(String s) {
+            in = new StringReader(s);
+        }
+        @Override public int read(char[] cbuf, int off, int len) throws IOException {
+            return in.read(cbuf, off, Math.min(len, 1));
+        }
+        @Override public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /** */
+    static List<String> split(Reader reader) throws IOException {
+        List<String> sentences = new ArrayList<>();
+        Sentences.split(reader, sentences::add);
+        return sentences;
+    }
+
+    @Test
+    void test01() throws Exception {
+        assertEquals(List.of("こんにちは。", "さようなら。"), Sentences.split("こんにちは。さようなら。"));
+        assertEquals(List.of(), Sentences.split(null));
+        assertEquals(List.of(), Sentences.split(""));
+    }
+
+    @Test
+    void testAcrossReads() throws Exception {
+        assertEquals(List.of("こんにちは。", "さようなら", "また明日。"),
+                split(new TrickleReader("こんにちは。さようなら\r\nまた明日。")));
+    }
+
+    @Test
+    void testAcrossBuffer() throws Exception {
+        // the delimiter is the last char of the first 1024 chars buffer, the next one starts the second
+        String first = "あ".repeat(1023) + "。";
+        String second = "い".repeat(10) + "。";
+        assertEquals(List.of(first, second), split(new StringReader(first + second)));
+        // a new line at the boundary
+        String third = "う".repeat(1024);
+        assertEquals(List.of(third, second), split(new StringReader(third + "\n" + second)));
+    }
+
+    @Test
+    void testTrailing() throws Exception {
+        assertEquals(List.of("こんにちは。", "終わりのない文"), Sentences.split("こんにちは。終わりのない文"));
+        assertEquals(List.of("終わりのない文"), split(new TrickleReader("終わりのない文")));
+    }
+
+    @Test
+    void testEmptyLines() throws Exception {
+        assertEquals(List.of("一行目", "二行目。"), Sentences.split("\n\n一行目\n\n  \r\n\t\n二行目。\n\n"));
+        assertEquals(List.of(), Sentences.split("\n\r\n   \n"));
+    }
+}
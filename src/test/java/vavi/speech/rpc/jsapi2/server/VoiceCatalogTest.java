@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.speech.rpc.jsapi2.server;
+
+import java.util.Arrays;
+import java.util.List;
+import javax.speech.SpeechLocale;
+import javax.speech.synthesis.Voice;
+
+import org.junit.jupiter.api.Test;
+import vavi.speech.rpc.jsapi2.client.RpcClient.VoiceDTO;
+import vavi.speech.rpc.jsapi2.stub.StubSynthesizerMode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * VoiceCatalogTest. voices are matched by locale, name, gender, age and variant.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class VoiceCatalogTest {
+
+    static final String MODE = StubSynthesizerMode.class.getName();
+
+    static final SpeechLocale JA_JP = new SpeechLocale("ja", "JP");
+
+    /** */
+    static List<String> names(VoiceDTO[] voices) {
+        return Arrays.stream(voices).map(voice -> voice.name).toList();
+    }
+
+    @Test
+    void testStub() throws Exception {
+        VoiceCatalog catalog = new VoiceCatalog(List.of(MODE));
+        assertTrue(catalog.contains(MODE));
+        assertEquals(List.of("stub-female", "stub-male", "stub-english"), names(catalog.getVoices(MODE)));
+
+        assertEquals(List.of("stub-female", "stub-male"), names(catalog.match(MODE, JA_JP, null, null, null, null)));
+        assertEquals(List.of("stub-english"), names(catalog.match(MODE, VoiceCatalog.toSpeechLocale("en_US"), null, null, null, null)));
+        assertEquals(List.of("stub-female", "stub-english"), names(catalog.match(MODE, null, null, Voice.GENDER_FEMALE, null, null)));
+        assertEquals(List.of("stub-male"), names(catalog.match(MODE, JA_JP, null, Voice.GENDER_MALE, null, null)));
+        assertEquals(List.of("stub-male"), names(catalog.match(MODE, null, null, null, Voice.AGE_MIDDLE_ADULT, null)));
+        assertEquals(List.of("stub-english"), names(catalog.match(MODE, null, "stub-english", null, null, null)));
+        assertEquals(List.of(), names(catalog.match(MODE, VoiceCatalog.toSpeechLocale("en_US"), null, Voice.GENDER_MALE, null, null)));
+
+        // mode names are set for clients choosing an engine by voice
+        assertEquals(MODE, catalog.match(null, null, "stub-male", null, null, null)[0].modeName);
+        assertEquals(0, catalog.match("no.such.Mode", null, null, null, null, null).length);
+    }
+
+    @Test
+    void testVariant() throws Exception {
+        VoiceCatalog catalog = new VoiceCatalog(List.of());
+        assertFalse(catalog.contains("mode"));
+        assertNull(catalog.getVoices("mode"));
+
+        catalog.add("mode", new Voice[] {
+            new Voice(JA_JP, "a", Voice.GENDER_FEMALE, Voice.AGE_YOUNGER_ADULT, 1),
+            new Voice(JA_JP, "b", Voice.GENDER_FEMALE, Voice.AGE_YOUNGER_ADULT, 2),
+            new Voice(new SpeechLocale("en", "US"), "c", Voice.GENDER_MALE, Voice.AGE_OLDER_ADULT, 1),
+        });
+        assertTrue(catalog.contains("mode"));
+        assertEquals(List.of("b"), names(catalog.match("mode", null, null, null, null, 2)));
+        assertEquals(List.of("a", "c"), names(catalog.match("mode", null, null, null, null, 1)));
+        assertEquals(List.of("a"), names(catalog.match("mode", JA_JP, null, Voice.GENDER_FEMALE, Voice.AGE_YOUNGER_ADULT, 1)));
+        assertEquals(List.of("a", "b", "c"), names(catalog.match("mode", null, null, Voice.GENDER_DONT_CARE, Voice.AGE_DONT_CARE, Voice.VARIANT_DONT_CARE)));
+
+        // a mode is added once
+        catalog.add("mode", new Voice[] {new Voice(JA_JP, "d", Voice.GENDER_MALE, Voice.AGE_CHILD, 1)});
+        assertEquals(List.of("a", "b", "c"), names(catalog.getVoices("mode")));
+    }
+
+    @Test
+    void testRegistry() throws Exception {
+        try (EngineRegistry registry = new EngineRegistry()) {
+            // not catalogued at startup, listed by the engine at the first request
+            assertFalse(registry.getCatalog().contains(MODE));
+            assertEquals(List.of("stub-female", "stub-male", "stub-english"), names(registry.getVoices(MODE)));
+            assertTrue(registry.getCatalog().contains(MODE));
+            assertEquals(List.of("stub-female"), names(registry.getCatalog().match(MODE, JA_JP, null, Voice.GENDER_FEMALE, Voice.AGE_YOUNGER_ADULT, null)));
+        }
+    }
+}